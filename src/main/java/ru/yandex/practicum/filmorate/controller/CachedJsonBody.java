@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Заранее сериализованное тело ответа для данных, которые не меняются во время работы приложения.
+ * ETag считается один раз; на запрос с совпадающим If-None-Match Spring сам отвечает 304.
+ */
+final class CachedJsonBody {
+    private static final CacheControl CACHE_CONTROL = CacheControl.maxAge(1, TimeUnit.HOURS).cachePublic();
+
+    private final byte[] body;
+    private final String etag;
+
+    CachedJsonBody(ObjectMapper objectMapper, Object value) {
+        try {
+            body = objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сериализовать справочник", e);
+        }
+        etag = "\"" + DigestUtils.md5DigestAsHex(body) + "\"";
+    }
+
+    ResponseEntity<byte[]> toResponse() {
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CACHE_CONTROL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+}
@@ -1,8 +1,10 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.RestController;
@@ -14,9 +16,16 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.BulkImportResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.service.BulkImportService;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.Collection;
 import java.util.List;
 
@@ -28,11 +37,32 @@ import java.util.List;
 public class FilmController {
 
     private final FilmService filmService;
+    private final BulkImportService bulkImportService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping
-    public Collection<Film> getFilms() {
-        log.info("Запрос на получение всех фильмов.");
-        return filmService.getFilms();
+    public Collection<Film> getFilms(@RequestParam(required = false) Long after,
+                                     @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            log.info("Запрос на получение всех фильмов.");
+            return filmService.getFilms();
+        }
+        log.info("Запрос на получение страницы фильмов после id {}", after);
+        return filmService.getFilmsPage(after, limit);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamFilms() {
+        log.info("Запрос на потоковую выгрузку всех фильмов.");
+        StreamingResponseBody body = out -> filmService.streamFilms(film -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(film));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
     @GetMapping("/{id}")
@@ -47,6 +77,12 @@ public class FilmController {
         return filmService.addFilm(film);
     }
 
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public BulkImportResult importFilms(InputStream body) {
+        log.info("Массовая загрузка фильмов");
+        return bulkImportService.importFilms(body);
+    }
+
     @PutMapping
     public Film updateFilm(@Valid @RequestBody Film newFilm) {
         log.info("Обновляем фильм с ID: {}", newFilm.getId());
@@ -59,6 +95,12 @@ public class FilmController {
         filmService.addLike(id, userId);
     }
 
+    @PostMapping("/likes/bulk")
+    public BulkImportResult addLikes(@RequestBody List<Like> likes) {
+        log.info("Пакетное добавление {} лайков", likes.size());
+        return filmService.addLikes(likes);
+    }
+
     @DeleteMapping("/{id}/like/{userId}")
     public void removeLike(@PathVariable Long id, @PathVariable Long userId) {
         log.info("Удаляем лайк: Film ID = {}, User ID = {}", id, userId);
@@ -95,8 +137,10 @@ public class FilmController {
 
     @GetMapping(value = "search")
     public List<Film> searchFilmsTitleDirector(@RequestParam(required = false) String query,
-                                                    @RequestParam(required = false) String by) {
+                                                    @RequestParam(required = false) String by,
+                                                    @RequestParam(defaultValue = "100") int count,
+                                                    @RequestParam(defaultValue = "0") int offset) {
         log.info("Получение фильмов по называнию {} и режисеру {} .", query, by);
-        return filmService.searchFilms(query, by);
+        return filmService.searchFilms(query, by, count, offset);
     }
 }
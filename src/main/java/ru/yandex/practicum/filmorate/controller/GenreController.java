@@ -1,7 +1,10 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -9,7 +12,6 @@ import org.springframework.web.bind.annotation.RestController;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
-import java.util.List;
 import java.util.Optional;
 
 @Slf4j
@@ -18,11 +20,18 @@ import java.util.Optional;
 @RequestMapping("/genres")
 public class GenreController {
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
+    private CachedJsonBody allGenresBody;
+
+    @PostConstruct
+    public void prepareBodies() {
+        allGenresBody = new CachedJsonBody(objectMapper, filmService.getAllGenres());
+    }
 
     @GetMapping
-    public List<Genre> getAllGenres() {
+    public ResponseEntity<byte[]> getAllGenres() {
         log.info("GET / genres");
-        return filmService.getAllGenres();
+        return allGenresBody.toResponse();
     }
 
     @GetMapping("/{id}")
@@ -1,7 +1,10 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -9,7 +12,6 @@ import org.springframework.web.bind.annotation.RestController;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
-import java.util.List;
 import java.util.Optional;
 
 @Slf4j
@@ -18,11 +20,18 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class MpaController {
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
+    private CachedJsonBody allMpaBody;
+
+    @PostConstruct
+    public void prepareBodies() {
+        allMpaBody = new CachedJsonBody(objectMapper, filmService.getAllMpa());
+    }
 
     @GetMapping
-    public List<Mpa> getAllMpa() {
+    public ResponseEntity<byte[]> getAllMpa() {
         log.info("Получаем все рейтинги");
-        return filmService.getAllMpa();
+        return allMpaBody.toResponse();
     }
 
     @GetMapping("/{id}")
@@ -1,17 +1,26 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.BulkImportResult;
 import ru.yandex.practicum.filmorate.model.Feed;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.BulkImportService;
 import ru.yandex.practicum.filmorate.service.RecommendationsService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.Collection;
 import java.util.List;
 
@@ -22,10 +31,31 @@ public class UserController {
     private static final Logger log = LoggerFactory.getLogger(UserController.class);
     private final UserService userService;
     private final RecommendationsService recommendationsService;
+    private final BulkImportService bulkImportService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping
-    public Collection<User> getUsers() {
-        return userService.getUsers();
+    public Collection<User> getUsers(@RequestParam(required = false) Long after,
+                                     @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            return userService.getUsers();
+        }
+        log.info("Получение страницы пользователей после id {}", after);
+        return userService.getUsersPage(after, limit);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamUsers() {
+        log.info("Потоковая выгрузка всех пользователей");
+        StreamingResponseBody body = out -> userService.streamUsers(user -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(user));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
     @GetMapping("/{id}")
@@ -64,21 +94,34 @@ public class UserController {
         return userService.addUser(user);
     }
 
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public BulkImportResult importUsers(InputStream body) {
+        log.info("Массовая загрузка пользователей");
+        return bulkImportService.importUsers(body);
+    }
+
     @PutMapping
     public User updateUser(@Valid @RequestBody User newUser) {
         return userService.updateUser(newUser);
     }
 
     @GetMapping("{id}/recommendations")
-    public List<Film> getRecommendationFilms(@PathVariable Long id) {
+    public List<Film> getRecommendationFilms(@PathVariable Long id,
+                                             @RequestParam(defaultValue = "100") int limit) {
         log.info("Получение списка рекомендованных фильмов для пользователя {}", id);
-        return recommendationsService.getRecommendationsFilms(id);
+        return recommendationsService.getRecommendationsFilms(id, limit);
     }
 
     @GetMapping("/{id}/feed")
-    public List<Feed> getFeed(@PathVariable Long id) {
-        log.info("Получение всех событий пользователя {}", id);
-        return userService.getFeed(id);
+    public List<Feed> getFeed(@PathVariable Long id,
+                              @RequestParam(required = false) Long before,
+                              @RequestParam(required = false) Integer limit) {
+        if (before == null && limit == null) {
+            log.info("Получение всех событий пользователя {}", id);
+            return userService.getFeed(id);
+        }
+        log.info("Получение страницы событий пользователя {} до события {}", id, before);
+        return userService.getFeedPage(id, before, limit);
     }
 
     @DeleteMapping({"/{id}"})
@@ -2,6 +2,9 @@ package ru.yandex.practicum.filmorate.dao;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
@@ -30,6 +33,7 @@ public class DirectorDbStorage implements DirectorStorage {
     }
 
     @Override
+    @Cacheable(cacheNames = "directors", key = "#id", unless = "#result == null")
     public Optional<Director> getDirectorById(Long id) {
         String sql = "SELECT * FROM directors WHERE director_id = ?";
         final String CHECK_DIRECTOR_ID = "SELECT COUNT(*) FROM directors WHERE director_id = ?";
@@ -65,6 +69,10 @@ public class DirectorDbStorage implements DirectorStorage {
     }
 
     @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = "directors", key = "#director.id"),
+            @CacheEvict(cacheNames = "films", allEntries = true)
+    })
     public Director updateDirector(Director director) {
         if (getDirectorById(director.getId()).isEmpty()) {
             throw new ResourceNotFoundException("Режиссер не найден. Ошибка обновления");
@@ -78,6 +86,10 @@ public class DirectorDbStorage implements DirectorStorage {
     }
 
     @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = "directors", key = "#directorId"),
+            @CacheEvict(cacheNames = "films", allEntries = true)
+    })
     public void deleteDirector(Long directorId) {
         String sql = "DELETE FROM directors WHERE director_id = ?";
 
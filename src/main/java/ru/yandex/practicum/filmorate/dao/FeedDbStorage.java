@@ -1,33 +1,391 @@
 package ru.yandex.practicum.filmorate.dao;
 
-import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.dao.Mapper.FeedMapper;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.enums.EventType;
+import ru.yandex.practicum.filmorate.model.enums.Operation;
 import ru.yandex.practicum.filmorate.storage.FeedStorage;
+import ru.yandex.practicum.filmorate.storage.RecentFeedCache;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Лента событий с отложенной записью. События кладутся в ограниченную очередь, отдельный поток
+ * пишет их в базу пакетами. Когда очередь заполнена, добавление события ждет освободившегося места.
+ * Чтение ленты сначала дожидается записи всех уже опубликованных событий.
+ */
+@Slf4j
 @Repository
-@RequiredArgsConstructor
 @Qualifier("feedDbStorage")
 public class FeedDbStorage implements FeedStorage {
+    private static final String GET_FEED_BY_ID_QUERY = "SELECT * FROM feed WHERE user_id = ? ORDER BY event_id";
+    private static final String GET_FEED_PAGE_QUERY = "SELECT * FROM feed WHERE user_id = ? AND event_id < ? " +
+            "ORDER BY event_id DESC LIMIT ?";
+    private static final String INSERT_FEED_QUERY = "INSERT INTO feed (time_event,user_id,event_type," +
+            "operation,entity_id) " +
+            "VALUES(?,?,?,?,?)";
+    private static final long FLUSH_TIMEOUT_MS = 5_000;
+    private static final long RETRY_DELAY_MS = 1_000;
 
     private final JdbcTemplate jdbc;
     private final FeedMapper mapper;
+    private final TransactionTemplate transactionTemplate;
+    private final RecentFeedCache recentFeedCache;
+    private final BlockingQueue<FeedJournal.Entry> queue;
+    private final FeedJournal journal;
+    private final int flushSize;
+    private final long flushIntervalMs;
+    private final long journalSyncIntervalMs;
+    private final ReentrantLock publishLock = new ReentrantLock();
+    private final Object writtenMonitor = new Object();
+    private final AtomicInteger flushWaiters = new AtomicInteger();
+    private volatile long publishedSeq;
+    private volatile long writtenSeq;
+    private volatile boolean running;
+    private Thread writerThread;
+    private long nextJournalSync;
 
-    private static final String GET_FEED_BY_ID_QUERY = "SELECT * FROM feed WHERE user_id = ?";
+    public FeedDbStorage(JdbcTemplate jdbc, FeedMapper mapper, TransactionTemplate transactionTemplate,
+                         RecentFeedCache recentFeedCache,
+                         @Value("${filmorate.feed.queue-capacity:10000}") int queueCapacity,
+                         @Value("${filmorate.feed.flush-size:500}") int flushSize,
+                         @Value("${filmorate.feed.flush-interval-ms:20}") long flushIntervalMs,
+                         @Value("${filmorate.feed.journal-path:}") String journalPath,
+                         @Value("${filmorate.feed.journal-sync-interval-ms:1000}") long journalSyncIntervalMs) {
+        this.jdbc = jdbc;
+        this.mapper = mapper;
+        this.transactionTemplate = transactionTemplate;
+        this.recentFeedCache = recentFeedCache;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.flushSize = flushSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.journalSyncIntervalMs = journalSyncIntervalMs;
+        this.journal = journalPath.isBlank() ? null : new FeedJournal(Path.of(journalPath));
+    }
 
+    @PostConstruct
+    public void start() {
+        if (journal != null) {
+            List<FeedJournal.Entry> pending = journal.recover();
+            if (!pending.isEmpty()) {
+                log.info("Из журнала ленты восстановлено {} незаписанных событий", pending.size());
+                for (int from = 0; from < pending.size(); from += flushSize) {
+                    write(pending.subList(from, Math.min(from + flushSize, pending.size())));
+                }
+            }
+            journal.truncate();
+        }
+        running = true;
+        writerThread = new Thread(this::runWriter, "feed-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        running = false;
+        writerThread.join(FLUSH_TIMEOUT_MS);
+        if (journal != null) {
+            if (queue.isEmpty() && writtenSeq == publishedSeq) {
+                journal.truncate();
+            } else {
+                journal.close();
+            }
+        }
+    }
 
     @Override
     public List<Feed> getFeed(Long id) {
+        flush();
         List<Feed> feeds = jdbc.query(GET_FEED_BY_ID_QUERY, (rs, rowNum) -> mapper.mapToFeed(rs), id);
         if (feeds.isEmpty()) {
             throw new NotFoundException("У этого пользователя нет событий");
         }
         return feeds;
     }
+
+    /**
+     * Последние события пользователя с id меньше {@code before}. Последняя страница обычно берется
+     * из буфера {@link RecentFeedCache}, более старые читаются по индексу (user_id, event_id).
+     */
+    @Override
+    public List<Feed> getFeedPage(Long id, Long before, int limit) {
+        flush();
+        List<Feed> feeds = recentFeedCache.getPage(id, before, limit,
+                () -> loadPage(id, null, recentFeedCache.getEventsPerUser()));
+        if (feeds == null) {
+            feeds = loadPage(id, before, limit);
+        }
+        if (feeds.isEmpty() && before == null) {
+            throw new NotFoundException("У этого пользователя нет событий");
+        }
+        return feeds;
+    }
+
+    /**
+     * Ставит событие в очередь на запись. Внутри транзакции событие публикуется только после её фиксации.
+     */
+    @Override
+    public void addEvent(long userId, EventType eventType, Operation operation, long entityId) {
+        long timestamp = System.currentTimeMillis();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(timestamp, userId, eventType, operation, entityId);
+                }
+            });
+        } else {
+            publish(timestamp, userId, eventType, operation, entityId);
+        }
+    }
+
+    /**
+     * Ждет, пока в базу будут записаны все события, опубликованные до вызова.
+     */
+    public void flush() {
+        long target = publishedSeq;
+        if (writtenSeq >= target || !running) {
+            return;
+        }
+        flushWaiters.incrementAndGet();
+        try {
+            long deadline = System.currentTimeMillis() + FLUSH_TIMEOUT_MS;
+            synchronized (writtenMonitor) {
+                while (writtenSeq < target) {
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) {
+                        log.warn("События ленты не записаны за {} мс, лента может быть неполной", FLUSH_TIMEOUT_MS);
+                        return;
+                    }
+                    writtenMonitor.wait(wait);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            flushWaiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Публикует событие и дожидается его записи в файл журнала. Событие попадает в журнал только после
+     * постановки в очередь, поэтому прерванное ожидание места не оставляет в журнале запись с номером,
+     * который получит следующее событие. Запись выполняется вне блокировки публикации, поэтому события,
+     * опубликованные одновременно, попадают в файл одной записью. На диск журнал сбрасывает поток записи.
+     */
+    private void publish(long timestamp, long userId, EventType eventType, Operation operation, long entityId) {
+        long seq;
+        publishLock.lock();
+        try {
+            FeedJournal.Entry entry = new FeedJournal.Entry(publishedSeq + 1, timestamp, userId, eventType,
+                    operation, entityId);
+            if (!running) {
+                write(List.of(entry));
+                return;
+            }
+            queue.put(entry);
+            if (journal != null) {
+                journal.append(entry);
+            }
+            seq = entry.seq();
+            publishedSeq = seq;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Прервано ожидание места в очереди событий ленты", e);
+        } finally {
+            publishLock.unlock();
+        }
+        if (journal != null) {
+            journal.write(seq);
+        }
+    }
+
+    private List<Feed> loadPage(Long id, Long before, int limit) {
+        List<Feed> feeds = jdbc.query(GET_FEED_PAGE_QUERY, (rs, rowNum) -> mapper.mapToFeed(rs), id,
+                before == null ? Long.MAX_VALUE : before, limit);
+        Collections.reverse(feeds);
+        return feeds;
+    }
+
+    private void runWriter() {
+        List<FeedJournal.Entry> batch = new ArrayList<>(flushSize);
+        while (running || !queue.isEmpty()) {
+            syncJournalIfDue();
+            try {
+                FeedJournal.Entry first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < flushSize) {
+                    queue.drainTo(batch, flushSize - batch.size());
+                    long wait = deadline - System.nanoTime();
+                    if (batch.size() >= flushSize || wait <= 0 || flushWaiters.get() > 0 || !running) {
+                        break;
+                    }
+                    FeedJournal.Entry next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                if (writeWithRetry(batch)) {
+                    markWritten(batch.getLast().seq());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Сбрасывает журнал на диск не чаще раза в filmorate.feed.journal-sync-interval-ms.
+     * Вызывается только потоком записи.
+     */
+    private void syncJournalIfDue() {
+        long now = System.currentTimeMillis();
+        if (journal == null || now < nextJournalSync) {
+            return;
+        }
+        nextJournalSync = now + journalSyncIntervalMs;
+        try {
+            journal.sync();
+        } catch (UncheckedIOException e) {
+            log.error("Не удалось сбросить журнал ленты на диск: {}", e.getMessage());
+        }
+    }
+
+    private boolean writeWithRetry(List<FeedJournal.Entry> batch) throws InterruptedException {
+        while (true) {
+            try {
+                write(batch);
+                return true;
+            } catch (DataAccessException e) {
+                if (!running) {
+                    log.error("События ленты {}-{} не записаны и останутся в журнале: {}", batch.getFirst().seq(),
+                            batch.getLast().seq(), e.getMessage());
+                    return false;
+                }
+                log.warn("Не удалось записать события ленты, повтор через {} мс: {}", RETRY_DELAY_MS, e.getMessage());
+                syncJournalIfDue();
+                Thread.sleep(RETRY_DELAY_MS);
+            }
+        }
+    }
+
+    /**
+     * Пишет пакет событий. Если пакет нарушает ограничения, например пользователь уже удален,
+     * события пишутся по одному, а нарушающие ограничения отбрасываются.
+     */
+    private void write(List<FeedJournal.Entry> batch) {
+        try {
+            recentFeedCache.append(insert(batch));
+        } catch (DataIntegrityViolationException e) {
+            for (FeedJournal.Entry entry : batch) {
+                try {
+                    recentFeedCache.append(insert(List.of(entry)));
+                } catch (DataIntegrityViolationException entryException) {
+                    log.warn("Событие ленты {} пользователя {} отброшено: {}", entry.eventType(), entry.userId(),
+                            entryException.getMessage());
+                }
+            }
+        }
+    }
+
+    private List<Feed> insert(List<FeedJournal.Entry> entries) {
+        List<Timestamp> times = entries.stream()
+                .map(entry -> Timestamp.valueOf(LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.timestamp()),
+                        ZoneOffset.UTC)))
+                .toList();
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        transactionTemplate.executeWithoutResult(status -> jdbc.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_FEED_QUERY, new String[]{"event_id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        FeedJournal.Entry entry = entries.get(i);
+                        ps.setTimestamp(1, times.get(i));
+                        ps.setLong(2, entry.userId());
+                        ps.setString(3, entry.eventType().name());
+                        ps.setString(4, entry.operation().name());
+                        ps.setLong(5, entry.entityId());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return entries.size();
+                    }
+                }, keyHolder));
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        List<Feed> feeds = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            FeedJournal.Entry entry = entries.get(i);
+            feeds.add(Feed.builder()
+                    .eventId(((Number) keys.get(i).values().iterator().next()).intValue())
+                    .timestamp(times.get(i).toInstant().getEpochSecond() * 1000)
+                    .userId((int) entry.userId())
+                    .eventType(entry.eventType())
+                    .operation(entry.operation())
+                    .entityId((int) entry.entityId())
+                    .build());
+        }
+        return feeds;
+    }
+
+    private void markWritten(long seq) {
+        if (journal != null) {
+            journal.checkpoint(seq);
+        }
+        synchronized (writtenMonitor) {
+            writtenSeq = seq;
+            writtenMonitor.notifyAll();
+        }
+        if (journal != null && publishLock.tryLock()) {
+            try {
+                if (publishedSeq == seq) {
+                    journal.truncate();
+                }
+            } finally {
+                publishLock.unlock();
+            }
+        }
+    }
 }
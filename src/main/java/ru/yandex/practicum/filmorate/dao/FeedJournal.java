@@ -0,0 +1,192 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.model.enums.EventType;
+import ru.yandex.practicum.filmorate.model.enums.Operation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Журнал событий ленты, которые ещё не записаны в базу. События копятся в памяти и дописываются
+ * строками в конец файла пакетом при вызове {@link #write(long)}; после него событие переживает падение
+ * процесса. На диск через {@link FileChannel#force(boolean)} файл сбрасывает {@link #sync()}, его периодически
+ * вызывает поток записи ленты, чтобы запросы не ждали fsync. При отключении питания теряются события,
+ * записанные после последнего сброса. После записи пакета в базу дописывается отметка о последнем
+ * записанном номере. При старте события после последней отметки записываются повторно.
+ */
+@Slf4j
+public class FeedJournal implements Closeable {
+    private static final String CHECKPOINT = "C";
+
+    private final Path path;
+    private final StringBuilder pending = new StringBuilder();
+    private final Object fileMonitor = new Object();
+    private long appendedSeq;
+    private volatile long writtenSeq;
+    private boolean unforced;
+    private FileChannel channel;
+
+    public FeedJournal(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Читает события, записанные после последней отметки.
+     */
+    public List<Entry> recover() {
+        List<Entry> entries = new ArrayList<>();
+        if (!Files.exists(path)) {
+            return entries;
+        }
+        long written = 0;
+        try {
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                String[] parts = line.split(",");
+                try {
+                    if (CHECKPOINT.equals(parts[0])) {
+                        written = Math.max(written, Long.parseLong(parts[1]));
+                    } else {
+                        entries.add(new Entry(Long.parseLong(parts[0]), Long.parseLong(parts[1]),
+                                Long.parseLong(parts[2]), EventType.valueOf(parts[3]), Operation.valueOf(parts[4]),
+                                Long.parseLong(parts[5])));
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("Пропущена поврежденная строка журнала ленты: {}", line);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long lastWritten = written;
+        entries.removeIf(entry -> entry.seq() <= lastWritten);
+        return entries;
+    }
+
+    /**
+     * Добавляет событие в журнал. В файл оно попадает при ближайшем {@link #write(long)}.
+     */
+    public synchronized void append(Entry entry) {
+        pending.append(entry.seq()).append(',').append(entry.timestamp()).append(',').append(entry.userId())
+                .append(',').append(entry.eventType()).append(',').append(entry.operation()).append(',')
+                .append(entry.entityId()).append('\n');
+        appendedSeq = Math.max(appendedSeq, entry.seq());
+    }
+
+    /**
+     * Дописывает отметку о записи в базу вместе с накопленными событиями. Файл на диск не сбрасывается:
+     * потерянная при отключении питания отметка приведет только к повторной записи уже записанных событий.
+     */
+    public void checkpoint(long seq) {
+        synchronized (fileMonitor) {
+            synchronized (this) {
+                pending.append(CHECKPOINT).append(',').append(seq).append('\n');
+            }
+            writePending(false);
+        }
+    }
+
+    /**
+     * Возвращает управление, когда событие с номером {@code seq} и все добавленные до него записаны в файл.
+     * Одновременные вызовы обходятся одной записью. Файл на диск не сбрасывается.
+     */
+    public void write(long seq) {
+        if (writtenSeq >= seq) {
+            return;
+        }
+        synchronized (fileMonitor) {
+            if (writtenSeq < seq) {
+                writePending(false);
+            }
+        }
+    }
+
+    /**
+     * Дописывает накопленное и сбрасывает файл на диск, если в него что-то записано после прошлого сброса.
+     */
+    public void sync() {
+        synchronized (fileMonitor) {
+            writePending(true);
+        }
+    }
+
+    /**
+     * Очищает журнал, когда все события из него записаны в базу.
+     */
+    public void truncate() {
+        synchronized (fileMonitor) {
+            synchronized (this) {
+                pending.setLength(0);
+                writtenSeq = appendedSeq;
+            }
+            unforced = false;
+            try {
+                closeChannel();
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (fileMonitor) {
+            writePending(true);
+            closeChannel();
+        }
+    }
+
+    private void writePending(boolean force) {
+        String lines;
+        long seq;
+        synchronized (this) {
+            lines = pending.toString();
+            pending.setLength(0);
+            seq = appendedSeq;
+        }
+        try {
+            if (!lines.isEmpty()) {
+                if (channel == null) {
+                    if (path.getParent() != null) {
+                        Files.createDirectories(path.getParent());
+                    }
+                    channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                            StandardOpenOption.APPEND);
+                }
+                ByteBuffer buffer = StandardCharsets.UTF_8.encode(lines);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                unforced = true;
+            }
+            writtenSeq = seq;
+            if (force && unforced) {
+                channel.force(false);
+                unforced = false;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    public record Entry(long seq, long timestamp, long userId, EventType eventType, Operation operation,
+                        long entityId) {
+    }
+}
@@ -3,11 +3,15 @@ package ru.yandex.practicum.filmorate.dao;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dao.Mapper.FilmMapper;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ResourceNotFoundException;
@@ -16,10 +20,15 @@ import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.MpaStorage;
 
 import java.sql.*;
 import java.sql.Date;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -27,24 +36,33 @@ import java.util.stream.Collectors;
 @Qualifier("filmDbStorage")
 @AllArgsConstructor
 public class FilmDbStorage implements FilmStorage {
+    private static final int IN_CLAUSE_CHUNK_SIZE = 500;
+    private static final int FILMS_PAGE_SIZE = 500;
+    private static final String SELECT_FILMS_QUERY = "SELECT f.film_id, f.name, f.description, f.releaseDate, " +
+            "f.duration, r.rating_id, r.name AS rating_name " +
+            "FROM films AS f " +
+            "LEFT JOIN mpa_rating AS r ON f.rating_id = r.rating_id ";
+    private static final String INSERT_FILM_QUERY = "INSERT INTO films (name, description, releaseDate, duration, " +
+            "rating_id) VALUES (?, ?, ?, ?, ?)";
+    private static final String FILMS_BY_DIRECTOR_NAME_QUERY = "SELECT df.film_id FROM directors_films AS df " +
+            "JOIN directors AS d ON d.director_id = df.director_id " +
+            "WHERE LOWER(d.name) LIKE ?";
+
     private final JdbcTemplate jdbc;
     private final FilmMapper filmMapper;
+    private final GenreStorage genreStorage;
+    private final MpaStorage mpaStorage;
 
     @Override
+    @Cacheable(cacheNames = "films", key = "#id")
     public Film getFilmById(Long id) {
-        final String sql = "SELECT f.film_id, f.name, f.description, f.releaseDate, f.duration, r.rating_id, r.name AS rating_name " +
-                "FROM films AS f " +
-                "LEFT JOIN mpa_rating AS r ON f.rating_id = r.rating_id " +
-                "WHERE f.film_id = ?";
+        final String sql = SELECT_FILMS_QUERY + "WHERE f.film_id = ?";
 
         try {
             log.info("Попытка получение фильма с ID {}", id);
 
             Film film = jdbc.queryForObject(sql, (rs, rowNum) -> filmMapper.mapToFilm(rs), id);
-            Set<Genre> genres = getGenresByFilmId(id);
-            film.setGenres(genres);
-            Set<Director> directors = getDirectorsByFilmId(id);
-            film.setDirectors(directors);
+            loadAssociations(List.of(film));
             return film;
         } catch (Exception e) {
             log.info("Ошибка получения фильма по причине {}", e.getMessage());
@@ -52,23 +70,30 @@ public class FilmDbStorage implements FilmStorage {
         }
     }
 
+    @Override
+    public Set<Long> getExistingFilmIds(Collection<Long> ids) {
+        Set<Long> existing = new HashSet<>();
+        for (List<Long> chunk : chunk(ids.stream().distinct().toList())) {
+            String sql = "SELECT film_id FROM films WHERE film_id IN (" + placeholders(chunk.size()) + ")";
+            existing.addAll(jdbc.queryForList(sql, Long.class, chunk.toArray()));
+        }
+        return existing;
+    }
+
     public List<Film> getFilmsByIds(List<Long> ids) {
-        final String sql = "SELECT f.film_id, f.name, f.description, f.releaseDate, f.duration, " +
-                "r.rating_id, r.name AS rating_name " +
-                "FROM films AS f " +
-                "LEFT JOIN mpa_rating AS r ON f.rating_id = r.rating_id " +
-                "WHERE f.film_id IN (" + ids.stream().map(String::valueOf).collect(Collectors.joining(",")) + ")";
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
 
         try {
             log.info("Попытка получения фильмов с ID {}", ids);
 
-            List<Film> films = jdbc.query(sql, (rs, rowNum) -> filmMapper.mapToFilm(rs));
-            for (Film film : films) {
-                Set<Genre> genres = getGenresByFilmId(film.getId());
-                film.setGenres(genres);
-                Set<Director> directors = getDirectorsByFilmId(film.getId());
-                film.setDirectors(directors);
+            List<Film> films = new ArrayList<>(ids.size());
+            for (List<Long> chunk : chunk(new ArrayList<>(new LinkedHashSet<>(ids)))) {
+                String sql = SELECT_FILMS_QUERY + "WHERE f.film_id IN (" + placeholders(chunk.size()) + ")";
+                films.addAll(jdbc.query(sql, (rs, rowNum) -> filmMapper.mapToFilm(rs), chunk.toArray()));
             }
+            loadAssociations(films);
             return films;
         } catch (Exception e) {
             log.info("Ошибка получения фильмов по причине {}", e.getMessage());
@@ -76,152 +101,174 @@ public class FilmDbStorage implements FilmStorage {
         }
     }
 
-    private Set<Genre> getGenresByFilmId(Long filmId) {
-        String sql = "SELECT g.genre_id, g.name " +
+    private void loadAssociations(List<Film> films) {
+        if (films.isEmpty()) {
+            return;
+        }
+        final String genresSql = "SELECT fg.film_id, fg.genre_id " +
                 "FROM film_genres AS fg " +
-                "JOIN genres AS g ON fg.genre_id = g.genre_id " +
-                "WHERE fg.film_id = ?";
-        return new LinkedHashSet<>(Objects.requireNonNull(jdbc.query(sql, filmMapper::mapToGenres, filmId)));
-    }
-
-    private Set<Director> getDirectorsByFilmId(Long filmId) {
-        String sql = "SELECT d.director_id, d.name " +
+                "WHERE fg.film_id IN (%s) " +
+                "ORDER BY fg.film_id, fg.genre_id";
+        final String directorsSql = "SELECT df.film_id, d.director_id, d.name " +
                 "FROM directors_films AS df " +
                 "JOIN directors AS d ON df.director_id = d.director_id " +
-                "WHERE df.film_id = ?";
-        return new LinkedHashSet<>(Objects.requireNonNull(jdbc.query(sql, filmMapper::mapToDirectors, filmId)));
-    }
-
-    @Override
-    public Collection<Film> getFilms() {
-        String sqlFilms = "SELECT f.film_id, f.name, f.description, f.releaseDate, f.duration, r.rating_id, " +
-                "r.name AS rating_name " +
-                "FROM films AS f " +
-                "LEFT JOIN mpa_rating AS r ON f.rating_id = r.rating_id";
+                "WHERE df.film_id IN (%s) " +
+                "ORDER BY df.film_id, d.director_id";
+
+        Map<Long, Set<Genre>> genresByFilmId = new HashMap<>();
+        Map<Long, Set<Director>> directorsByFilmId = new HashMap<>();
+        Set<Long> ids = films.stream().map(Film::getId).collect(Collectors.toCollection(LinkedHashSet::new));
+        for (List<Long> chunk : chunk(new ArrayList<>(ids))) {
+            String inSql = placeholders(chunk.size());
+            jdbc.query(String.format(genresSql, inSql), rs -> {
+                genresByFilmId.computeIfAbsent(rs.getLong("film_id"), k -> new LinkedHashSet<>())
+                        .add(genreStorage.getGenreById(rs.getInt("genre_id")).orElseThrow());
+            }, chunk.toArray());
+            jdbc.query(String.format(directorsSql, inSql), rs -> {
+                directorsByFilmId.computeIfAbsent(rs.getLong("film_id"), k -> new LinkedHashSet<>())
+                        .add(new Director(rs.getLong("director_id"), rs.getString("name")));
+            }, chunk.toArray());
+        }
 
-        String sqlGenres = "SELECT fg.film_id, g.genre_id, g.name " +
-                "FROM film_genres AS fg " +
-                "JOIN genres AS g ON fg.genre_id = g.genre_id";
+        films.forEach(film -> {
+            film.setGenres(genresByFilmId.getOrDefault(film.getId(), Collections.emptySet()));
+            film.setDirectors(directorsByFilmId.getOrDefault(film.getId(), Collections.emptySet()));
+        });
+    }
 
-        String sqlDirectors = "SELECT df.film_id, d.director_id, d.name " +
-                "FROM directors_films AS df " +
-                "JOIN directors AS d ON df.director_id = d.director_id";
+    private static List<List<Long>> chunk(List<Long> ids) {
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            chunks.add(ids.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, ids.size())));
+        }
+        return chunks;
+    }
 
-        List<Film> films = jdbc.query(sqlFilms, (rs, rowNum) -> filmMapper.mapToFilm(rs));
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
 
-        Map<Long, Set<Genre>> filmGenresMap = jdbc.query(sqlGenres, rs -> {
-            Map<Long, Set<Genre>> map = new HashMap<>();
-            while (rs.next()) {
-                long filmId = rs.getLong("film_id");
-                Genre genre = new Genre(rs.getInt("genre_id"), rs.getString("name"));
-                map.computeIfAbsent(filmId, k -> new HashSet<>()).add(genre);
-            }
-            return map;
-        });
+    @Override
+    public Collection<Film> getFilms() {
+        List<Film> films = new ArrayList<>();
+        streamFilms(films::add);
+        return films;
+    }
 
-        Map<Long, Set<Director>> filmDirectorMap = jdbc.query(sqlDirectors, rs -> {
-            Map<Long, Set<Director>> map = new HashMap<>();
-            while (rs.next()) {
-                long filmId = rs.getLong("film_id");
-                Director director = new Director(rs.getLong("director_id"), rs.getString("name"));
-                map.computeIfAbsent(filmId, k -> new HashSet<>()).add(director);
+    @Override
+    public void streamFilms(Consumer<Film> consumer) {
+        List<Film> page;
+        long lastId = 0;
+        do {
+            page = getFilmsPage(lastId, FILMS_PAGE_SIZE);
+            page.forEach(consumer);
+            if (!page.isEmpty()) {
+                lastId = page.getLast().getId();
             }
-            return map;
-        });
-
-        films.forEach(film -> {
-            assert filmGenresMap != null;
-            film.setGenres(filmGenresMap.getOrDefault(film.getId(), Collections.emptySet()));
-            assert filmDirectorMap != null;
-            film.setDirectors(filmDirectorMap.getOrDefault(film.getId(), Collections.emptySet()));
-        });
+        } while (page.size() == FILMS_PAGE_SIZE);
+    }
 
+    @Override
+    public List<Film> getFilmsPage(long afterId, int limit) {
+        String sql = SELECT_FILMS_QUERY +
+                "WHERE f.film_id > ? " +
+                "ORDER BY f.film_id " +
+                "LIMIT ?";
+        List<Film> films = jdbc.query(sql, (rs, rowNum) -> filmMapper.mapToFilm(rs), afterId, limit);
+        loadAssociations(films);
         return films;
     }
 
     @Override
     public List<Film> getFilmsByDirector(long directorId, String sortBy) {
-        String sqlFilms = "SELECT f.film_id, f.name, f.description, f.releaseDate, f.duration, r.rating_id, " +
-                "r.name AS rating_name, COUNT(l.user_id) AS likes_count " +
-                "FROM films AS f " +
-                "JOIN directors_films df ON f.film_id = df.film_id " +
-                "LEFT JOIN mpa_rating AS r ON f.rating_id = r.rating_id " +
-                "LEFT JOIN likes l ON f.film_id = l.film_id " +
-                "WHERE df.director_id = ? " +
-                "GROUP BY f.film_id, r.rating_id " +
-                "ORDER BY " + (sortBy.equals("likes") ? "likes_count DESC" : "f.releaseDate");
-
-        String sqlGenres = "SELECT fg.film_id, g.genre_id, g.name " +
-                "FROM film_genres AS fg " +
-                "JOIN genres AS g ON fg.genre_id = g.genre_id";
-
-        String sqlDirectors = "SELECT df.film_id, d.director_id, d.name " +
-                "FROM directors_films AS df " +
-                "JOIN directors AS d ON df.director_id = d.director_id";
-
-        List<Film> films = jdbc.query(sqlFilms, new Object[]{directorId}, (rs, rowNum) -> filmMapper.mapToFilm(rs));
+        String sql = SELECT_FILMS_QUERY +
+                "WHERE f.film_id IN (SELECT df.film_id FROM directors_films AS df WHERE df.director_id = ?) " +
+                "ORDER BY " + ("likes".equals(sortBy) ? "f.like_count DESC" : "f.releaseDate") + ", f.film_id";
 
-        Map<Long, Set<Genre>> filmGenresMap = jdbc.query(sqlGenres, rs -> {
-            Map<Long, Set<Genre>> map = new HashMap<>();
-            while (rs.next()) {
-                long filmId = rs.getLong("film_id");
-                Genre genre = new Genre(rs.getInt("genre_id"), rs.getString("name"));
-                map.computeIfAbsent(filmId, k -> new HashSet<>()).add(genre);
-            }
-            return map;
-        });
-
-        Map<Long, Set<Director>> filmDirectorMap = jdbc.query(sqlDirectors, rs -> {
-            Map<Long, Set<Director>> map = new HashMap<>();
-            while (rs.next()) {
-                long filmId = rs.getLong("film_id");
-                Director director = new Director(rs.getLong("director_id"), rs.getString("name"));
-                map.computeIfAbsent(filmId, k -> new HashSet<>()).add(director);
-            }
-            return map;
-        });
-
-        films.forEach(film -> {
-            assert filmGenresMap != null;
-            film.setGenres(filmGenresMap.getOrDefault(film.getId(), Collections.emptySet()));
-            assert filmDirectorMap != null;
-            film.setDirectors(filmDirectorMap.getOrDefault(film.getId(), Collections.emptySet()));
-        });
+        List<Film> films = jdbc.query(sql, (rs, rowNum) -> filmMapper.mapToFilm(rs), directorId);
         if (films.isEmpty()) {
             throw new NotFoundException("Фильмов с таким режиссером нет");
         }
+        loadAssociations(films);
 
         return films;
     }
 
     @Override
+    @Transactional
     public Film addFilm(Film film) {
         validateRatingExists(film.getMpa().getId());
         validateGenresExist(film.getGenres());
         validateDirectorsExist(film.getDirectors());
 
-        String sql = "INSERT INTO films (name, description, releaseDate, duration, rating_id) VALUES (?, ?, ?, ?, ?)";
         KeyHolder keyHolder = new GeneratedKeyHolder();
         jdbc.update(
                 connection -> {
-                    PreparedStatement ps = connection.prepareStatement(sql, new String[]{"film_id"});
-                    ps.setString(1, film.getName());
-                    ps.setString(2, film.getDescription());
-                    ps.setDate(3, Date.valueOf(film.getReleaseDate()));
-                    ps.setInt(4, film.getDuration());
-                    ps.setInt(5, film.getMpa().getId());
+                    PreparedStatement ps = connection.prepareStatement(INSERT_FILM_QUERY, new String[]{"film_id"});
+                    setFilmParameters(ps, film);
                     return ps;
                 }, keyHolder);
         film.setId(Objects.requireNonNull(keyHolder.getKey()).longValue());
-        addGenresToFilm(film);
-        addDirectorsToFilm(film);
+        insertLinks("film_genres", "genre_id", film.getId(), genreIds(film));
+        insertLinks("directors_films", "director_id", film.getId(), directorIds(film));
         return film;
     }
 
+    /**
+     * Добавляет фильмы одним пакетом вместе со связями. Рейтинг, жанры и режиссеры
+     * должны быть проверены вызывающим кодом.
+     */
+    @Override
+    @Transactional
+    public List<Film> addFilms(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.batchUpdate(connection -> connection.prepareStatement(INSERT_FILM_QUERY, new String[]{"film_id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        setFilmParameters(ps, films.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return films.size();
+                    }
+                }, keyHolder);
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        List<Long> genreFilmIds = new ArrayList<>();
+        List<Long> genreIds = new ArrayList<>();
+        List<Long> directorFilmIds = new ArrayList<>();
+        List<Long> directorIds = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            film.setId(((Number) keys.get(i).values().iterator().next()).longValue());
+            genreIds(film).forEach(genreId -> {
+                genreFilmIds.add(film.getId());
+                genreIds.add(genreId);
+            });
+            directorIds(film).forEach(directorId -> {
+                directorFilmIds.add(film.getId());
+                directorIds.add(directorId);
+            });
+        }
+        insertLinks("film_genres", "genre_id", genreFilmIds, genreIds);
+        insertLinks("directors_films", "director_id", directorFilmIds, directorIds);
+        return films;
+    }
+
+    private static void setFilmParameters(PreparedStatement ps, Film film) throws SQLException {
+        ps.setString(1, film.getName());
+        ps.setString(2, film.getDescription());
+        ps.setDate(3, Date.valueOf(film.getReleaseDate()));
+        ps.setInt(4, film.getDuration());
+        ps.setInt(5, film.getMpa().getId());
+    }
+
     private void validateRatingExists(int ratingId) {
-        String sql = "SELECT COUNT(*) FROM mpa_rating WHERE rating_id = ?";
-        Integer count = jdbc.queryForObject(sql, Integer.class, ratingId);
-        if (count == null || count == 0) {
+        if (!mpaStorage.mpaExists(ratingId)) {
             throw new ValidationException("Рейтинг с ID " + ratingId + " не найден.");
         }
     }
@@ -230,10 +277,8 @@ public class FilmDbStorage implements FilmStorage {
         if (genres == null || genres.isEmpty()) {
             return;
         }
-        String sql = "SELECT COUNT(*) FROM genres WHERE genre_id = ?";
         for (Genre genre : genres) {
-            Integer count = jdbc.queryForObject(sql, Integer.class, genre.getId());
-            if (count == null || count == 0) {
+            if (genre.getId() == null || !genreStorage.genreExists(genre.getId())) {
                 throw new ValidationException("Жанр с ID " + genre.getId() + " не найден.");
             }
         }
@@ -243,214 +288,157 @@ public class FilmDbStorage implements FilmStorage {
         if (directors == null || directors.isEmpty()) {
             return;
         }
-        String sql = "SELECT COUNT(*) FROM directors WHERE director_id = ?";
+        List<Long> ids = directors.stream().map(Director::getId).filter(Objects::nonNull).distinct().toList();
+        Set<Long> existing = new HashSet<>();
+        for (List<Long> chunk : chunk(ids)) {
+            String sql = "SELECT director_id FROM directors WHERE director_id IN (" + placeholders(chunk.size()) + ")";
+            existing.addAll(jdbc.queryForList(sql, Long.class, chunk.toArray()));
+        }
         for (Director director : directors) {
-            Integer count = jdbc.queryForObject(sql, Integer.class, director.getId());
-            if (count == null || count == 0) {
+            if (!existing.contains(director.getId())) {
                 throw new ValidationException("Режиссер с ID " + director.getId() + " не найден.");
             }
         }
     }
 
-    private void addGenresToFilm(Film film) {
-        String delSql = "DELETE FROM film_genres WHERE film_id = ?";
-        LinkedHashSet<Genre> genres = film.getGenres();
-        Long id = film.getId();
-        jdbc.update(delSql, id);
-
-        if (genres == null || genres.isEmpty()) {
-            return;
+    private static List<Long> genreIds(Film film) {
+        if (film.getGenres() == null) {
+            return List.of();
         }
+        return film.getGenres().stream().map(genre -> genre.getId().longValue()).distinct().toList();
+    }
 
-        String sql = "INSERT INTO film_genres(film_id, genre_id) VALUES(?, ?)";
-        jdbc.batchUpdate(sql, new BatchPreparedStatementSetter() {
-            @Override
-            public void setValues(PreparedStatement ps, int i) throws SQLException {
-                Genre genre = (Genre) genres.toArray()[i];
-                ps.setLong(1, id);
-                ps.setInt(2, genre.getId());
-            }
+    private static List<Long> directorIds(Film film) {
+        if (film.getDirectors() == null) {
+            return List.of();
+        }
+        return film.getDirectors().stream().map(Director::getId).distinct().toList();
+    }
 
-            @Override
-            public int getBatchSize() {
-                return genres.size();
-            }
-        });
+    /**
+     * Приводит связи фильма к новому набору: удаляет лишние и добавляет недостающие,
+     * не трогая строки, которые уже есть.
+     */
+    private void syncLinks(String table, String column, long filmId, List<Long> newIds) {
+        List<Long> currentIds = jdbc.queryForList(
+                "SELECT " + column + " FROM " + table + " WHERE film_id = ?", Long.class, filmId);
+        Set<Long> keep = new HashSet<>(newIds);
+        List<Long> removed = currentIds.stream().filter(id -> !keep.contains(id)).toList();
+        Set<Long> current = new HashSet<>(currentIds);
+        List<Long> added = newIds.stream().filter(id -> !current.contains(id)).toList();
+
+        for (List<Long> chunk : chunk(removed)) {
+            List<Object> params = new ArrayList<>(chunk.size() + 1);
+            params.add(filmId);
+            params.addAll(chunk);
+            jdbc.update("DELETE FROM " + table + " WHERE film_id = ? AND " + column + " IN (" +
+                    placeholders(chunk.size()) + ")", params.toArray());
+        }
+        insertLinks(table, column, filmId, added);
     }
 
-    private void addDirectorsToFilm(Film film) {
-        String delSql = "DELETE FROM directors_films WHERE film_id = ?";
-        LinkedHashSet<Director> directors = film.getDirectors();
-        Long id = film.getId();
-        jdbc.update(delSql, id);
+    private void insertLinks(String table, String column, long filmId, List<Long> ids) {
+        insertLinks(table, column, Collections.nCopies(ids.size(), filmId), ids);
+    }
 
-        if (directors == null || directors.isEmpty()) {
+    private void insertLinks(String table, String column, List<Long> filmIds, List<Long> ids) {
+        if (ids.isEmpty()) {
             return;
         }
-
-        String sql = "INSERT INTO directors_films(film_id, director_id) VALUES(?, ?)";
+        String sql = "INSERT INTO " + table + "(film_id, " + column + ") VALUES(?, ?)";
         jdbc.batchUpdate(sql, new BatchPreparedStatementSetter() {
             @Override
             public void setValues(PreparedStatement ps, int i) throws SQLException {
-                Director director = (Director) directors.toArray()[i];
-                ps.setLong(1, id);
-                ps.setLong(2, director.getId());
+                ps.setLong(1, filmIds.get(i));
+                ps.setLong(2, ids.get(i));
             }
 
             @Override
             public int getBatchSize() {
-                return directors.size();
+                return ids.size();
             }
         });
     }
 
     @Override
+    @Transactional
+    @CacheEvict(cacheNames = "films", key = "#film.id")
     public Film updateFilm(Film film) {
         validateRatingExists(film.getMpa().getId());
         validateGenresExist(film.getGenres());
-
-        if (getFilmById(film.getId()) == null) {
-            throw new ResourceNotFoundException("Фильм не найден. Ошибка обнавления");
-        }
+        validateDirectorsExist(film.getDirectors());
 
         String sql = "UPDATE films SET name = ?, description = ?, releaseDate = ?, duration = ?, rating_id = ? " +
                 "WHERE film_id = ?";
-        jdbc.update(sql, film.getName(),
+        int updated = jdbc.update(sql, film.getName(),
                 film.getDescription(),
                 film.getReleaseDate(),
                 film.getDuration(),
                 film.getMpa().getId(),
                 film.getId());
-        addGenresToFilm(film);
-        addDirectorsToFilm(film);
+        if (updated == 0) {
+            throw new ResourceNotFoundException("Фильм не найден. Ошибка обнавления");
+        }
+        syncLinks("film_genres", "genre_id", film.getId(), genreIds(film));
+        syncLinks("directors_films", "director_id", film.getId(), directorIds(film));
         return film;
     }
 
     @Override
     public List<Film> getPopularFilms(int count, Integer genreId, Integer year) {
-        String insertion = "";
-        if (genreId == null && year != null) {
-            insertion = "WHERE YEAR(f.releaseDate) = " + year;
-        }
-        if (genreId != null && year == null) {
-            insertion = "LEFT JOIN film_genres AS fg ON fg.film_id = f.film_id WHERE fg.genre_id = " + genreId;
+        List<String> conditions = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        if (genreId != null) {
+            conditions.add("EXISTS (SELECT 1 FROM film_genres AS fg WHERE fg.film_id = f.film_id AND fg.genre_id = ?)");
+            params.add(genreId);
         }
-        if (genreId != null && year != null) {
-            insertion = "LEFT JOIN film_genres AS fg ON fg.film_id = f.film_id WHERE fg.genre_id = " + genreId + " AND YEAR(f.releaseDate) = " + year;
+        if (year != null) {
+            conditions.add("f.releaseDate >= ? AND f.releaseDate < ?");
+            params.add(Date.valueOf(LocalDate.of(year, 1, 1)));
+            params.add(Date.valueOf(LocalDate.of(year + 1, 1, 1)));
         }
+        params.add(count);
 
-        String sql = "SELECT f.film_id, f.name, f.description, f.releaseDate, f.duration, r.rating_id, " +
-                "r.name AS rating_name, COUNT(l.user_id) AS likes " +
-                "FROM films AS f " +
-                "LEFT JOIN likes AS l ON f.film_id = l.film_id " +
-                "LEFT JOIN mpa_rating AS r ON f.rating_id = r.rating_id " +
-                insertion +
-                " GROUP BY f.film_id, r.rating_id, r.name " +
-                "ORDER BY likes DESC " +
+        String sql = SELECT_FILMS_QUERY +
+                (conditions.isEmpty() ? "" : "WHERE " + String.join(" AND ", conditions) + " ") +
+                "ORDER BY f.like_count DESC, f.film_id " +
                 "LIMIT ?";
 
-        List<Film> films = jdbc.query(sql, (rs, rowNum) -> filmMapper.mapToFilm(rs), count);
-
-        if (films.isEmpty()) {
-            return films;
-        }
-
-        List<Long> filmsIds = films.stream()
-                .map(Film::getId)
-                .collect(Collectors.toList());
-        addGenresToFilms(filmsIds, films);
-
+        List<Film> films = jdbc.query(sql, (rs, rowNum) -> filmMapper.mapToFilm(rs), params.toArray());
+        loadAssociations(films);
         return films;
     }
 
     @Override
     public List<Film> getPopularCommonFilms(Long userId, Long friendId) {
-        String sql = "SELECT FILM_ID FROM LIKES WHERE USER_ID = ? OR USER_ID = ? GROUP BY FILM_ID HAVING COUNT(*)>1";
-        List<Long> filmsIds = jdbc.query(sql, rs -> {
-            List<Long> ids = new ArrayList<>();
-            while (rs.next()) {
-                ids.add(rs.getLong("FILM_ID"));
-            }
-            return ids;
-        }, userId, friendId);
-        assert filmsIds != null;
-        if (filmsIds.isEmpty()) {
-            return new ArrayList<>();
-        }
-        String inSql = filmsIds.stream()
-                .map(String::valueOf)
-                .collect(Collectors.joining(", "));
-        sql = "SELECT f.film_id, f.name, f.description, f.releaseDate, f.duration, r.rating_id, " +
-                "r.name AS rating_name, COUNT(l.user_id) AS likes " +
-                "FROM films AS f " +
-                "LEFT JOIN likes AS l ON f.film_id = l.film_id " +
-                "LEFT JOIN mpa_rating AS r ON f.rating_id = r.rating_id " +
-                "WHERE f.film_id IN (?)" +
-                "GROUP BY f.film_id, r.rating_id, r.name " +
-                "ORDER BY likes DESC ";
-        List<Film> films = jdbc.query(sql, (rs, rowNum) -> filmMapper.mapToFilm(rs), inSql);
-
-        addGenresToFilms(filmsIds, films);
+        String sql = SELECT_FILMS_QUERY +
+                "WHERE f.film_id IN (SELECT film_id FROM likes WHERE user_id = ?) " +
+                "AND f.film_id IN (SELECT film_id FROM likes WHERE user_id = ?) " +
+                "ORDER BY f.like_count DESC, f.film_id";
+        List<Film> films = jdbc.query(sql, (rs, rowNum) -> filmMapper.mapToFilm(rs), userId, friendId);
+        loadAssociations(films);
         return films;
     }
 
-    private void addGenresToFilms(List<Long> ids, List<Film> films) {
-
-        String inSql = ids.stream()
-                .map(String::valueOf)
-                .collect(Collectors.joining(", "));
-
-        String genresByFilmsSql = "SELECT fg.film_id, g.genre_id, g.name " +
-                "FROM film_genres AS fg " +
-                "JOIN genres AS g ON fg.genre_id = g.genre_id " +
-                "WHERE fg.film_id IN (" + inSql + ")";
-
-        String directorsByFilmsSql = "SELECT df.film_id, d.director_id, d.name " +
-                "FROM directors_films AS df " +
-                "JOIN directors AS d ON df.director_id = d.director_id " +
-                "WHERE df.film_id IN (" + inSql + ")";
-
-        Map<Long, Set<Genre>> genresByFilmId = jdbc.query(genresByFilmsSql, rs -> {
-            Map<Long, Set<Genre>> genreMap = new HashMap<>();
-            while (rs.next()) {
-                long filmId = rs.getLong("film_id");
-                Genre genre = new Genre(rs.getInt("genre_id"), rs.getString("name"));
-                genreMap.computeIfAbsent(filmId, k -> new LinkedHashSet<>()).add(genre);
-            }
-            return genreMap;
-        });
-
-        Map<Long, Set<Director>> directorsByFilmId = jdbc.query(directorsByFilmsSql, rs -> {
-            Map<Long, Set<Director>> directorMap = new HashMap<>();
-            while (rs.next()) {
-                long filmId = rs.getLong("film_id");
-                Director director = new Director(rs.getLong("director_id"), rs.getString("name"));
-                directorMap.computeIfAbsent(filmId, k -> new LinkedHashSet<>()).add(director);
-            }
-            return directorMap;
-        });
-
-        films.forEach(film -> {
-            assert genresByFilmId != null;
-            film.setGenres(genresByFilmId.getOrDefault(film.getId(), new LinkedHashSet<>()));
-        });
-        films.forEach(film -> {
-            assert directorsByFilmId != null;
-            film.setDirectors(directorsByFilmId.getOrDefault(film.getId(), new LinkedHashSet<>()));
-        });
-    }
-
     @Override
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = "films", key = "#id"),
+            @CacheEvict(cacheNames = "reviews", allEntries = true)
+    })
     public void deleteFilm(Long id) {
+        String deleteUsefulSql = "DELETE FROM useful " +
+                "WHERE review_id IN (SELECT review_id FROM reviews WHERE film_id = ?)";
         String deleteReviewsSql = "DELETE FROM reviews WHERE film_id = ?";
         String deleteLikesSql = "DELETE FROM likes WHERE film_id = ?";
         String deleteFilmGenresSql = "DELETE FROM film_genres WHERE film_id = ?";
-        String deleteUsefulSql = "DELETE FROM useful WHERE useful_id = ?";
+        String deleteFilmDirectorsSql = "DELETE FROM directors_films WHERE film_id = ?";
 
+        jdbc.update(deleteUsefulSql, id);
         jdbc.update(deleteReviewsSql, id);
         jdbc.update(deleteLikesSql, id);
         jdbc.update(deleteFilmGenresSql, id);
-        jdbc.update(deleteUsefulSql, id);
+        jdbc.update(deleteFilmDirectorsSql, id);
 
         String deleteFilmSql = "DELETE FROM films WHERE film_id = ?";
         jdbc.update(deleteFilmSql, id);
@@ -459,132 +447,42 @@ public class FilmDbStorage implements FilmStorage {
         log.info("Фильм с id {} был успешно удален", id);
     }
 
-    public List<Film> searchFilmsTitleAndDirector(String queryStr) {
-        String sql = "SELECT f.*, m.name AS rating_name, g.genre_id, g.name AS genre_name, d.director_id, " +
-                "d.name AS director_name, COUNT(l.USER_ID) AS likes FROM films f " +
-                "JOIN mpa_rating m ON f.rating_id = m.rating_id " +
-                "LEFT JOIN film_genres fg ON f.film_id = fg.film_id " +
-                "LEFT JOIN genres g ON fg.genre_id = g.genre_id " +
-                "LEFT JOIN directors_films df ON f.film_id = df.film_id " +
-                "LEFT JOIN directors d ON df.director_id = d.director_id " +
-                "LEFT JOIN LIKES l ON l.film_id = f.film_id " +
-                "WHERE LOWER(f.name) LIKE ? OR LOWER(d.name) LIKE ? " +
-                "GROUP BY f.FILM_ID " +
-                "ORDER BY LIKES DESC";
-
-        List<Film> films = jdbc.query(sql, (rs, rowNum) -> {
-            Film film = filmMapper.mapToFilm(rs);
-            Integer genreId = rs.getInt("genre_id");
-            String genreName = rs.getString("genre_name");
-            addGenreToFilm(film, genreId, genreName);
-
-            Long directorId = rs.getLong("director_id");
-            String directorName = rs.getString("director_name");
-            addDirectorToFilm(film, directorId, directorName);
-
-            return film;
-        }, "%" + queryStr.toLowerCase() + "%", "%" + queryStr.toLowerCase() + "%");
-
-
+    public List<Film> searchFilmsTitleAndDirector(String queryStr, int count, int offset) {
+        String pattern = "%" + queryStr.toLowerCase() + "%";
+        List<Film> films = searchFilms("LOWER(f.name) LIKE ? OR f.film_id IN (" + FILMS_BY_DIRECTOR_NAME_QUERY + ")",
+                count, offset, pattern, pattern);
         log.debug("Получены все Film по названию и режиссёру {}", queryStr);
-
         return films;
     }
 
-    private void addDirectorToFilm(Film film, Long directorId, String directorName) {
-        if (directorName != null) {
-            Director director = new Director(directorId, directorName);
-            film.getDirectors().add(director);
-        }
-    }
-
-    public List<Film> searchFilmsTitle(String queryStr) {
-        String sql = "SELECT f.*, m.name AS rating_name, g.genre_id, g.name AS genre_name\n" +
-                "FROM films f\n" +
-                "JOIN mpa_rating m ON f.rating_id = m.rating_id\n" +
-                "LEFT JOIN film_genres fg ON f.film_id = fg.film_id\n" +
-                "LEFT JOIN genres g ON fg.genre_id = g.genre_id\n" +
-                "WHERE LOWER(f.name) LIKE ?";
-
-        List<Film> films = jdbc.query(sql, (rs, rowNum) -> {
-            Film film = filmMapper.mapToFilm(rs);
-            Integer genreId = rs.getInt("genre_id");
-            String genreName = rs.getString("genre_name");
-            addGenreToFilm(film, genreId, genreName);
-            return film;
-        }, "%" + queryStr.toLowerCase() + "%");
-
-        Map<Long, Film> filmMap = new HashMap<>();
-        for (Film film : films) {
-            filmMap.put(film.getId(), film);
-        }
-
-        List<Film> uniqueFilms = new ArrayList<>(filmMap.values());
+    public List<Film> searchFilmsTitle(String queryStr, int count, int offset) {
+        List<Film> films = searchFilms("LOWER(f.name) LIKE ?", count, offset, "%" + queryStr.toLowerCase() + "%");
         log.debug("Получены все фильмы по названию {}", queryStr);
-
-        return uniqueFilms;
-    }
-
-
-    private void addGenreToFilm(Film film, Integer genreId, String genreName) {
-        if (genreName != null) {
-            Genre genre = new Genre(genreId, genreName);
-            film.getGenres().add(genre);
-        }
+        return films;
     }
 
-    public List<Film> searchFilmsDirector(String queryStr) {
-        String sql = "SELECT f.*, m.name AS rating_name, g.genre_id, g.name AS genre_name " +
-                "FROM films f " +
-                "JOIN directors_films df ON df.film_id = f.film_id " +
-                "JOIN directors d ON d.director_id = df.director_id " +
-                "LEFT JOIN mpa_rating m ON f.rating_id = m.rating_id " +
-                "LEFT JOIN film_genres fg ON f.film_id = fg.film_id " +
-                "LEFT JOIN genres g ON fg.genre_id = g.genre_id " +
-                "WHERE LOWER(d.name) LIKE ?";
-
-        List<Film> films = jdbc.query(sql, (rs, rowNum) -> {
-            Film film = filmMapper.mapToFilm(rs);
-            Integer genreId = rs.getInt("genre_id");
-            String genreName = rs.getString("genre_name");
-            addGenreToFilm(film, genreId, genreName);
-            return film;
-        }, "%" + queryStr.toLowerCase() + "%");
-
-        Map<Long, Film> filmMap = new HashMap<>();
-        for (Film film : films) {
-            filmMap.put(film.getId(), film);
-        }
-
-        List<Film> uniqueFilms = new ArrayList<>(filmMap.values());
-
-        for (Film film : uniqueFilms) {
-            addDirectorsForFilm(film);
-        }
-
+    public List<Film> searchFilmsDirector(String queryStr, int count, int offset) {
+        List<Film> films = searchFilms("f.film_id IN (" + FILMS_BY_DIRECTOR_NAME_QUERY + ")", count, offset,
+                "%" + queryStr.toLowerCase() + "%");
         log.debug("Получены все фильмы по имени режиссёра {}", queryStr);
-        return uniqueFilms;
-    }
-
-
-    private void addDirectorsForFilm(Film film) {
-        if (film == null) {
-            return;
-        }
-        List<Director> directors = fetchDirectorsByFilmId(film.getId());
-        film.setDirectors(directors);
+        return films;
     }
 
-    private List<Director> fetchDirectorsByFilmId(Long filmId) {
-        String sql = "SELECT d.* FROM directors d " +
-                "JOIN directors_films df ON d.director_id = df.director_id " +
-                "WHERE df.film_id = ?";
-
-        return jdbc.query(sql, (rs, rowNum) -> {
-            return new Director(
-                    rs.getLong("director_id"),
-                    rs.getString("name")
-            );
-        }, filmId);
+    private List<Film> searchFilms(String condition, int count, int offset, Object... patterns) {
+        String sql = "SELECT f.film_id FROM films AS f " +
+                "WHERE " + condition + " " +
+                "ORDER BY f.like_count DESC, f.film_id " +
+                "LIMIT ? OFFSET ?";
+        List<Object> params = new ArrayList<>(Arrays.asList(patterns));
+        params.add(count);
+        params.add(offset);
+
+        List<Long> ids = jdbc.query(sql, (rs, rowNum) -> rs.getLong("film_id"), params.toArray());
+        Map<Long, Film> filmsById = getFilmsByIds(ids).stream()
+                .collect(Collectors.toMap(Film::getId, Function.identity()));
+        return ids.stream()
+                .map(filmsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
-}
\ No newline at end of file
+}
@@ -3,6 +3,8 @@ package ru.yandex.practicum.filmorate.dao;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.dao.Mapper.UserMapper;
@@ -10,12 +12,13 @@ import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.model.enums.EventType;
 import ru.yandex.practicum.filmorate.model.enums.Operation;
+import ru.yandex.practicum.filmorate.storage.FeedStorage;
 import ru.yandex.practicum.filmorate.storage.FriendshipStorage;
 
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Repository
 @Slf4j
@@ -24,43 +27,31 @@ import java.util.List;
 public class FriendDbStorage implements FriendshipStorage {
     private final JdbcTemplate jdbc;
     private final UserMapper userMapper;
+    private final FeedStorage feedStorage;
 
-    private static final  String INSERT_FEED_QUERY = "INSERT INTO feed (time_event,user_id," +
-            "event_type,operation,entity_id) " +
-            "VALUES(?,?,?,?,?)";
 
-
-    public void addFriend(Long userId, Long friendId) {
-        final String CHECK_USER_QUERY = "SELECT COUNT(*) FROM users WHERE user_id = ?";
-        final String CHECK_QUERY = "SELECT COUNT(*) FROM friendship WHERE (user_id = ? AND friend_id = ?) " +
-                "OR (user_id = ? AND friend_id = ?)";
-        final String INSERT_QUERY = "INSERT INTO friendship (user_id, friend_id, status) VALUES (?, ?, ?)";
-        final String UPDATE_QUERY = "UPDATE friendship SET status = TRUE WHERE user_id = ? AND friend_id = ?";
-        final String UPDATE_REVERSE_QUERY = "UPDATE friendship SET status = FALSE WHERE user_id = ? AND friend_id = ?";
+    /**
+     * Добавляет пользователю друга одним запросом, если пользователи ещё не связаны ни в одну сторону.
+     *
+     * @return была ли добавлена дружба
+     */
+    @Override
+    public boolean addFriend(Long userId, Long friendId) {
+        final String INSERT_QUERY = "INSERT INTO friendship (user_id, friend_id, status) " +
+                "SELECT ?, ?, TRUE WHERE NOT EXISTS (SELECT 1 FROM friendship " +
+                "WHERE (user_id = ? AND friend_id = ?) OR (user_id = ? AND friend_id = ?))";
         try {
-            Integer userCount = jdbc.queryForObject(CHECK_USER_QUERY, Integer.class, userId);
-            if (userCount == null || userCount == 0) {
-                throw new UserNotFoundException("Пользователь с ID " + userId + " не найден");
-            }
-            Integer friendCount = jdbc.queryForObject(CHECK_USER_QUERY, Integer.class, friendId);
-            if (friendCount == null || friendCount == 0) {
-                throw new UserNotFoundException("Пользователь с ID " + friendId + " не найден");
+            int inserted = jdbc.update(INSERT_QUERY, userId, friendId, userId, friendId, friendId, userId);
+            if (inserted == 0) {
+                return false;
             }
-            int count = jdbc.queryForObject(CHECK_QUERY, Integer.class, userId, friendId, friendId, userId);
-            if (count > 0) {
-                return;
-            }
-            jdbc.update(INSERT_QUERY, userId, friendId, false);
-            count = jdbc.queryForObject(CHECK_QUERY, Integer.class, friendId, userId, userId, friendId);
-            if (count > 0) {
-                jdbc.update(UPDATE_QUERY, userId, friendId);
-                jdbc.update(UPDATE_REVERSE_QUERY, friendId, userId);
-                jdbc.update(INSERT_FEED_QUERY, LocalDateTime.ofInstant(Instant.now(), ZoneOffset.UTC),
-                        userId, EventType.FRIEND.name(), Operation.ADD.name(), friendId);
-            }
-        } catch (UserNotFoundException e) {
-            log.error("Ошибка: {}", e.getMessage());
-            throw e;
+            feedStorage.addEvent(userId, EventType.FRIEND, Operation.ADD, friendId);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        } catch (DataIntegrityViolationException e) {
+            log.error("Ошибка: пользователь {} или {} не найден", userId, friendId);
+            throw new UserNotFoundException("Пользователь с ID " + userId + " или " + friendId + " не найден");
         } catch (Exception e) {
             log.error("Ошибка при добавлении друга: userId={}, friendId={}", userId, friendId, e);
             throw new RuntimeException("Ошибка при добавлении друга", e);
@@ -82,8 +73,7 @@ public class FriendDbStorage implements FriendshipStorage {
                 throw new UserNotFoundException("Пользователь с ID " + friendId + " не найден");
             }
             jdbc.update(DELETE_FRIEND_QUERY, id, friendId);
-            jdbc.update(INSERT_FEED_QUERY, LocalDateTime.ofInstant(Instant.now(), ZoneOffset.UTC),
-                    id, EventType.FRIEND.name(), Operation.REMOVE.name(), friendId);
+            feedStorage.addEvent(id, EventType.FRIEND, Operation.REMOVE, friendId);
         } catch (UserNotFoundException e) {
             log.error("Ошибка: {}", e.getMessage());
             throw e;
@@ -116,6 +106,17 @@ public class FriendDbStorage implements FriendshipStorage {
         }
     }
 
+    @Override
+    public Map<Long, List<Long>> getFriendIdsByUser() {
+        final String GET_FRIENDSHIPS_QUERY = "SELECT user_id, friend_id FROM friendship";
+        Map<Long, List<Long>> friendIdsByUser = new HashMap<>();
+        jdbc.query(GET_FRIENDSHIPS_QUERY, rs -> {
+            friendIdsByUser.computeIfAbsent(rs.getLong("user_id"), id -> new ArrayList<>())
+                    .add(rs.getLong("friend_id"));
+        });
+        return friendIdsByUser;
+    }
+
     @Override
     public List<User> getCommonFriends(Long id, Long friendId) {
         final String GET_COMMON_FRIENDS_QUERY =
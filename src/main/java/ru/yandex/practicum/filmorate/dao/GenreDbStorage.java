@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.dao;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -13,30 +14,44 @@ import java.sql.SQLException;
 import java.util.List;
 import java.util.Optional;
 
+/**
+ * Справочник жанров. Таблица меняется только миграциями, поэтому читается один раз при старте
+ * в массив, индексированный по id.
+ */
 @Slf4j
 @Repository
 @RequiredArgsConstructor
 public class GenreDbStorage implements GenreStorage {
     private final JdbcTemplate jdbc;
+    private List<Genre> allGenres;
+    private Genre[] genresById;
+
+    @PostConstruct
+    public void load() {
+        String sql = "SELECT * FROM genres ORDER BY genre_id";
+        allGenres = List.copyOf(jdbc.query(sql, (rs, rowNum) -> rowGenre(rs)));
+        genresById = new Genre[allGenres.isEmpty() ? 0 : allGenres.getLast().getId() + 1];
+        allGenres.forEach(genre -> genresById[genre.getId()] = genre);
+        log.info("Справочник жанров загружен: {} записей", allGenres.size());
+    }
 
     @Override
     public List<Genre> getAllGenres() {
-        String sql = "SELECT * FROM genres";
-        return jdbc.query(sql, (rs, rowNum) -> rowGenre(rs));
+        return allGenres;
     }
 
     @Override
     public Optional<Genre> getGenreById(int id) {
-        String sql = "SELECT * FROM genres WHERE genre_id = ?";
-        final String CHECK_GENRE_ID = "SELECT COUNT(*) FROM genres WHERE genre_id = ?";
-
-        Integer count = jdbc.queryForObject(CHECK_GENRE_ID, Integer.class, id);
-        if (count == null || count == 0) {
+        if (!genreExists(id)) {
             log.error("Ошибка получения Genre с id {}", id);
             throw new ResourceNotFoundException("Ошибка получения Genre");
         }
+        return Optional.of(genresById[id]);
+    }
 
-        return jdbc.query(sql, (rs, rowNum) -> rowGenre(rs), id).stream().findFirst();
+    @Override
+    public boolean genreExists(int id) {
+        return id >= 0 && id < genresById.length && genresById[id] != null;
     }
 
     private Genre rowGenre(ResultSet rs) throws SQLException {
@@ -3,21 +3,27 @@ package ru.yandex.practicum.filmorate.dao;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.model.enums.EventType;
 import ru.yandex.practicum.filmorate.model.enums.Operation;
+import ru.yandex.practicum.filmorate.storage.FeedStorage;
 import ru.yandex.practicum.filmorate.storage.LikeStorage;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @Repository
@@ -25,38 +31,134 @@ import java.util.List;
 @Qualifier("likeDbStorage")
 public class LikeDbStorage implements LikeStorage {
     private final JdbcTemplate jdbc;
+    private final FeedStorage feedStorage;
 
-    private static final String INSERT_FEED_QUERY = "INSERT INTO feed (time_event,user_id,event_type," +
-            "operation,entity_id) " +
-            "VALUES(?,?,?,?,?)";
+    private static final String UPDATE_LIKE_COUNT_QUERY = "UPDATE films SET like_count = like_count + ? " +
+            "WHERE film_id = ?";
 
+    /**
+     * Добавляет лайк и увеличивает счетчик фильма в одной транзакции. Строка фильма блокируется первой,
+     * поэтому одновременные лайки одного фильма проверяют наличие лайка по очереди. Если лайк все же
+     * успел вставить другой запрос, нарушение ключа означает, что лайк уже есть.
+     */
     @Override
-    public void addLike(Film film, User user) {
-        String sql = "INSERT INTO likes (film_id, user_id) VALUES (?, ?)";
-        jdbc.update(sql, film.getId(), user.getId());
-        jdbc.update(INSERT_FEED_QUERY, LocalDateTime.ofInstant(Instant.now(), ZoneOffset.UTC),
-                user.getId(), EventType.LIKE.name(), Operation.ADD.name(), film.getId());
+    @Transactional
+    public boolean addLike(Film film, User user) {
+        String sql = "INSERT INTO likes (film_id, user_id) " +
+                "SELECT ?, ? WHERE NOT EXISTS (SELECT 1 FROM likes WHERE film_id = ? AND user_id = ?)";
+        lockFilm(film.getId());
+        int inserted;
+        try {
+            inserted = jdbc.update(sql, film.getId(), user.getId(), film.getId(), user.getId());
+        } catch (DuplicateKeyException e) {
+            inserted = 0;
+        }
+        if (inserted > 0) {
+            jdbc.update(UPDATE_LIKE_COUNT_QUERY, inserted, film.getId());
+        }
+        feedStorage.addEvent(user.getId(), EventType.LIKE, Operation.ADD, film.getId());
         log.info("Лайк добавлен фильму с id {} от пользователя с id {}", film.getId(), user.getId());
+        return inserted > 0;
     }
 
     @Override
-    public void deleteLike(Film film, User user) {
+    @Transactional
+    public List<Like> addLikes(List<Like> likes) {
+        if (likes.isEmpty()) {
+            return likes;
+        }
+        String sql = "INSERT INTO likes (film_id, user_id) " +
+                "SELECT ?, ? WHERE NOT EXISTS (SELECT 1 FROM likes WHERE film_id = ? AND user_id = ?)";
+        int[] inserted = jdbc.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Like like = likes.get(i);
+                ps.setLong(1, like.getFilmId());
+                ps.setLong(2, like.getUserId());
+                ps.setLong(3, like.getFilmId());
+                ps.setLong(4, like.getUserId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return likes.size();
+            }
+        });
+
+        List<Like> added = new ArrayList<>();
+        Map<Long, Integer> likeCountDeltas = new HashMap<>();
+        for (int i = 0; i < likes.size(); i++) {
+            if (inserted[i] > 0) {
+                added.add(likes.get(i));
+                likeCountDeltas.merge(likes.get(i).getFilmId(), 1, Integer::sum);
+            }
+        }
+        List<Map.Entry<Long, Integer>> deltas = new ArrayList<>(likeCountDeltas.entrySet());
+        jdbc.batchUpdate(UPDATE_LIKE_COUNT_QUERY, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setInt(1, deltas.get(i).getValue());
+                ps.setLong(2, deltas.get(i).getKey());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return deltas.size();
+            }
+        });
+
+        likes.forEach(like -> feedStorage.addEvent(like.getUserId(), EventType.LIKE, Operation.ADD, like.getFilmId()));
+        log.info("Добавлено {} лайков из {}", added.size(), likes.size());
+        return added;
+    }
+
+    @Override
+    @Transactional
+    public boolean deleteLike(Film film, User user) {
         String sql = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
-        jdbc.update(sql, film.getId(), user.getId());
-        jdbc.update(INSERT_FEED_QUERY, LocalDateTime.ofInstant(Instant.now(), ZoneOffset.UTC),
-                user.getId(), EventType.LIKE.name(), Operation.REMOVE.name(), film.getId());
+        lockFilm(film.getId());
+        int deleted = jdbc.update(sql, film.getId(), user.getId());
+        if (deleted > 0) {
+            jdbc.update(UPDATE_LIKE_COUNT_QUERY, -deleted, film.getId());
+        }
+        feedStorage.addEvent(user.getId(), EventType.LIKE, Operation.REMOVE, film.getId());
         log.info("Лайк удален у фильма с id {} от пользователя с id {}", film.getId(), user.getId());
+        return deleted > 0;
+    }
+
+    @Override
+    public Map<Long, Integer> getLikeCounts() {
+        final String sql = "SELECT film_id, COUNT(*) AS likes FROM likes GROUP BY film_id";
+        Map<Long, Integer> counts = new HashMap<>();
+        jdbc.query(sql, rs -> {
+            counts.put(rs.getLong("film_id"), rs.getInt("likes"));
+        });
+        return counts;
+    }
+
+    @Override
+    public List<Long> getLikedFilmIds(Long userId) {
+        final String sql = "SELECT film_id FROM likes WHERE user_id = ?";
+        return jdbc.query(sql, LikeDbStorage::mapRow, userId);
+    }
+
+    @Override
+    public Map<Long, List<Long>> getLikedFilmIdsByUser() {
+        final String sql = "SELECT user_id, film_id FROM likes ORDER BY user_id, film_id";
+        Map<Long, List<Long>> likedFilms = new HashMap<>();
+        jdbc.query(sql, rs -> {
+            likedFilms.computeIfAbsent(rs.getLong("user_id"), k -> new ArrayList<>()).add(rs.getLong("film_id"));
+        });
+        return likedFilms;
     }
 
     @Override
     public List<Long> getFriendsOfInterestDB(Long userId) {
         final String sql = "SELECT fl.user_id, COUNT(fl.film_id) AS rate FROM likes ul " +
                 "JOIN likes fl ON (ul.film_id = fl.film_id AND ul.user_id != fl.user_id) " +
-                "JOIN users u ON (fl.user_id != u.user_id) " +
                 "WHERE ul.user_id = ? " +
                 "GROUP BY fl.user_id " +
-                "HAVING rate > 1 " +
-                "ORDER BY rate DESC " +
+                "ORDER BY rate DESC, fl.user_id " +
                 "LIMIT 10";
 
         List<Long> usersIdsSameLeads = jdbc.query(sql, (rs, rowNum) -> rs.getLong("user_id"), userId);
@@ -65,13 +167,24 @@ public class LikeDbStorage implements LikeStorage {
     }
 
     @Override
-    public List<Long> getRecommendedFilmsDB(Long userId, List<Long> friendsOfInterestIds) {
+    public List<Long> getRecommendedFilmsDB(Long userId, List<Long> friendsOfInterestIds, int limit) {
         String userIdParams = String.join(",", Collections.nCopies(friendsOfInterestIds.size(), "?"));
-        final String sql = "SELECT fl.film_id FROM likes fl " +
-                "WHERE fl.user_id IN (" + userIdParams + ") " +
-                "AND fl.film_id NOT IN (SELECT ul.film_id FROM likes ul WHERE ul.user_id = ?)";
+        final String sql = "SELECT fl.film_id, SUM(s.rate) AS score FROM likes fl " +
+                "JOIN (SELECT ol.user_id, COUNT(*) AS rate FROM likes ul " +
+                "JOIN likes ol ON ul.film_id = ol.film_id " +
+                "WHERE ul.user_id = ? AND ol.user_id IN (" + userIdParams + ") " +
+                "GROUP BY ol.user_id) s ON fl.user_id = s.user_id " +
+                "WHERE fl.film_id NOT IN (SELECT ul.film_id FROM likes ul WHERE ul.user_id = ?) " +
+                "GROUP BY fl.film_id " +
+                "ORDER BY score DESC, fl.film_id " +
+                "LIMIT ?";
 
-        List<Long> recommendedFilmsIds = jdbc.query(sql, LikeDbStorage::mapRow, friendsOfInterestIds.toArray(), userId);
+        List<Object> params = new ArrayList<>();
+        params.add(userId);
+        params.addAll(friendsOfInterestIds);
+        params.add(userId);
+        params.add(limit);
+        List<Long> recommendedFilmsIds = jdbc.query(sql, LikeDbStorage::mapRow, params.toArray());
         log.debug("Получаем список id фильмов рекомендованных для пользователя {}.", userId);
         return recommendedFilmsIds;
     }
@@ -79,4 +192,8 @@ public class LikeDbStorage implements LikeStorage {
     private static Long mapRow(ResultSet rs, int rowNum) throws SQLException {
         return rs.getLong("film_id");
     }
+
+    private void lockFilm(Long filmId) {
+        jdbc.queryForList("SELECT film_id FROM films WHERE film_id = ? FOR UPDATE", Long.class, filmId);
+    }
 }
@@ -1,15 +1,11 @@
 package ru.yandex.practicum.filmorate.dao.Mapper;
 
 import org.springframework.stereotype.Component;
-import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
-import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.LinkedHashSet;
-import java.util.Set;
 
 @Component
 public class FilmMapper {
@@ -23,22 +19,4 @@ public class FilmMapper {
                 .mpa(new Mpa(rs.getInt("rating_id"), rs.getString("rating_name")))
                 .build();
     }
-
-    public Set<Genre> mapToGenres(ResultSet rs) throws SQLException {
-        Set<Genre> genres = new LinkedHashSet<>();
-        while (rs.next()) {
-            Genre genre = new Genre(rs.getInt("genre_id"), rs.getString("name"));
-            genres.add(genre);
-        }
-        return genres;
-    }
-
-    public Set<Director> mapToDirectors(ResultSet rs) throws SQLException {
-        Set<Director> directors = new LinkedHashSet<>();
-        while (rs.next()) {
-            Director director = new Director(rs.getLong("director_id"), rs.getString("name"));
-            directors.add(director);
-        }
-        return directors;
-    }
 }
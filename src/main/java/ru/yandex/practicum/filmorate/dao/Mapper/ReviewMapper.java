@@ -11,17 +11,13 @@ import java.sql.SQLException;
 public class ReviewMapper implements RowMapper<Review> {
     @Override
     public Review mapRow(ResultSet rs, int rowNum) throws SQLException {
-        int likes = rs.getInt("likes");
-        int dislikes = rs.getInt("dislikes");
-        int useful = likes - dislikes;
-
         return Review.builder()
                 .reviewId(rs.getLong("review_id"))
                 .content(rs.getString("content"))
                 .isPositive(rs.getBoolean("is_positive"))
                 .userId(rs.getLong("user_id"))
                 .filmId(rs.getLong("film_id"))
-                .useful(useful)
+                .useful(rs.getInt("useful"))
                 .build();
     }
 }
@@ -1,8 +1,8 @@
 package ru.yandex.practicum.filmorate.dao;
 
-import lombok.AllArgsConstructor;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exception.ResourceNotFoundException;
@@ -14,40 +14,43 @@ import java.sql.SQLException;
 import java.util.List;
 import java.util.Optional;
 
+/**
+ * Справочник рейтингов MPA, загружается один раз при старте, как и справочник жанров.
+ */
 @Slf4j
 @Repository
-@AllArgsConstructor
+@RequiredArgsConstructor
 public class MpaDbStorage implements MpaStorage {
-    JdbcTemplate jdbc;
+    private final JdbcTemplate jdbc;
+    private List<Mpa> allMpa;
+    private Mpa[] mpaById;
+
+    @PostConstruct
+    public void load() {
+        String sql = "SELECT * FROM mpa_rating ORDER BY rating_id";
+        allMpa = List.copyOf(jdbc.query(sql, (rs, rowNum) -> rowMpa(rs)));
+        mpaById = new Mpa[allMpa.isEmpty() ? 0 : allMpa.getLast().getId() + 1];
+        allMpa.forEach(mpa -> mpaById[mpa.getId()] = mpa);
+        log.info("Справочник рейтингов загружен: {} записей", allMpa.size());
+    }
 
     @Override
     public List<Mpa> getAllMpa() {
-        String sql = "SELECT * FROM mpa_rating";
-        List<Mpa> allMpa;
-        try {
-            allMpa = jdbc.query(sql, (rs, rowNum) -> rowMpa(rs));
-            log.info("Mpa найдены");
-        } catch (DataAccessException e) {
-            log.error("Error getAllMpa");
-            throw new RuntimeException(e);
-        }
         return allMpa;
     }
 
     @Override
     public Optional<Mpa> getMpaById(Integer id) {
-        String sql = "SELECT * FROM mpa_rating WHERE rating_id = ?";
-        final String CHECK_MPA_ID = "SELECT COUNT(*) FROM mpa_rating WHERE rating_id = ?";
-
-        Integer count = jdbc.queryForObject(CHECK_MPA_ID, Integer.class, id);
-        if (count == null || count == 0) {
+        if (id == null || !mpaExists(id)) {
             log.error("Ошибка получения Mpa с id {}", id);
             throw new ResourceNotFoundException("Ошибка получения Mpa");
         }
+        return Optional.of(mpaById[id]);
+    }
 
-            return jdbc.query(sql, (rs, rowNum) -> rowMpa(rs), id)
-                    .stream()
-                    .findFirst();
+    @Override
+    public boolean mpaExists(int id) {
+        return id >= 0 && id < mpaById.length && mpaById[id] != null;
     }
 
     private Mpa rowMpa(ResultSet rs) throws SQLException {
@@ -2,36 +2,47 @@ package ru.yandex.practicum.filmorate.dao;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dao.Mapper.ReviewMapper;
 import ru.yandex.practicum.filmorate.exception.ResourceNotFoundException;
 import ru.yandex.practicum.filmorate.model.Review;
 import ru.yandex.practicum.filmorate.model.enums.EventType;
 import ru.yandex.practicum.filmorate.model.enums.Operation;
+import ru.yandex.practicum.filmorate.storage.FeedStorage;
 import ru.yandex.practicum.filmorate.storage.ReviewStorage;
 
 import java.sql.PreparedStatement;
-import java.sql.Statement;
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 
 @Repository
 @Slf4j
 @RequiredArgsConstructor
 public class ReviewDbStorage implements ReviewStorage {
+    private static final String SELECT_REVIEWS_QUERY = "SELECT review_id, content, is_positive, user_id, film_id, " +
+            "useful FROM reviews ";
+    private static final String LOCK_REVIEW_QUERY = "SELECT review_id FROM reviews WHERE review_id = ? FOR UPDATE";
+    private static final String SELECT_VOTE_QUERY = "SELECT vote FROM useful WHERE review_id = ? AND user_id = ? " +
+            "FOR UPDATE";
+    private static final int IN_CLAUSE_CHUNK_SIZE = 500;
+    private static final int LIKE = 1;
+    private static final int DISLIKE = -1;
+
     private final JdbcTemplate jdbc;
     private final ReviewMapper reviewMapper;
-
-    private static final String INSERT_FEED_QUERY = "INSERT INTO feed (time_event,user_id,event_type," +
-            "operation,entity_id) " +
-            "VALUES(?,?,?,?,?)";
+    private final FeedStorage feedStorage;
 
     @Override
     public Review addReviews(Review reviews) {
@@ -40,7 +51,7 @@ public class ReviewDbStorage implements ReviewStorage {
 
         KeyHolder keyHolder = new GeneratedKeyHolder();
         jdbc.update(con -> {
-            PreparedStatement ps = con.prepareStatement(INSERT_QUERY, Statement.RETURN_GENERATED_KEYS);
+            PreparedStatement ps = con.prepareStatement(INSERT_QUERY, new String[]{"review_id"});
             ps.setString(1, reviews.getContent());
             ps.setBoolean(2, reviews.getIsPositive());
             ps.setLong(3, reviews.getUserId());
@@ -48,148 +59,187 @@ public class ReviewDbStorage implements ReviewStorage {
             return ps;
         }, keyHolder);
         reviews.setReviewId(Objects.requireNonNull(keyHolder.getKey()).longValue());
-        jdbc.update(INSERT_FEED_QUERY, LocalDateTime.ofInstant(Instant.now(), ZoneOffset.UTC),
-                reviews.getUserId(), EventType.REVIEW.name(), Operation.ADD.name(), reviews.getReviewId());
+        feedStorage.addEvent(reviews.getUserId(), EventType.REVIEW, Operation.ADD, reviews.getReviewId());
         return reviews;
     }
 
+    /**
+     * Обновляет текст и оценку отзыва. Автор и полезность берутся из заблокированной строки отзыва,
+     * остальное из запроса, поэтому повторно отзыв не читается.
+     */
     @Override
+    @Transactional
+    @CacheEvict(cacheNames = "reviews", key = "#reviews.reviewId")
     public Review updateReviews(Review reviews) {
-        final String UPDATE_REVIEW_QUERY = "UPDATE reviews SET content = ?, is_positive = ? " +
-                "WHERE review_id = ?";
-        int update = jdbc.update(UPDATE_REVIEW_QUERY,
-                reviews.getContent(),
-                reviews.getIsPositive(),
-                reviews.getReviewId()
-        );
-        if (update == 0) {
-            log.error("Не удалось обновить отзыв с id={}", reviews.getReviewId());
-            throw new ResourceNotFoundException("Отзыв с указанным id не найден");
-        }
-        jdbc.update(INSERT_FEED_QUERY, LocalDateTime.ofInstant(Instant.now(), ZoneOffset.UTC),
-                getReviewsById(reviews.getReviewId()).getUserId(), EventType.REVIEW.name(), Operation.UPDATE.name(), reviews.getReviewId());
-
-        return getReviewsById(reviews.getReviewId());
+        final String UPDATE_REVIEW_QUERY = "UPDATE reviews SET content = ?, is_positive = ? WHERE review_id = ?";
+        Review owner = lockReviewOwner(reviews.getReviewId());
+        jdbc.update(UPDATE_REVIEW_QUERY, reviews.getContent(), reviews.getIsPositive(), reviews.getReviewId());
+        Review review = Review.builder()
+                .reviewId(reviews.getReviewId())
+                .content(reviews.getContent())
+                .isPositive(reviews.getIsPositive())
+                .userId(owner.getUserId())
+                .filmId(owner.getFilmId())
+                .useful(owner.getUseful())
+                .build();
+        feedStorage.addEvent(review.getUserId(), EventType.REVIEW, Operation.UPDATE, review.getReviewId());
+        return review;
     }
 
+    /**
+     * Удаляет отзыв вместе с голосами. Автор читается из строки отзыва, заблокированной до удаления.
+     */
     @Override
+    @Transactional
+    @CacheEvict(cacheNames = "reviews", key = "#id")
     public void deleteReviews(Long id) {
-        final String DELETE_USEFUL_QUERY = "DELETE FROM useful WHERE useful_id = ?";
-        Long userId = getReviewsById(id).getUserId();
-        jdbc.update(DELETE_USEFUL_QUERY, id);
-
+        final String DELETE_USEFUL_QUERY = "DELETE FROM useful WHERE review_id = ?";
         final String DELETE_REVIEWS_QUERY = "DELETE FROM reviews WHERE review_id = ?";
 
+        Review owner = lockReviewOwner(id);
+        jdbc.update(DELETE_USEFUL_QUERY, id);
         jdbc.update(DELETE_REVIEWS_QUERY, id);
-        jdbc.update(INSERT_FEED_QUERY, LocalDateTime.ofInstant(Instant.now(), ZoneOffset.UTC),
-                userId, EventType.REVIEW.name(), Operation.REMOVE.name(), id);
+        feedStorage.addEvent(owner.getUserId(), EventType.REVIEW, Operation.REMOVE, id);
     }
 
     @Override
+    @Cacheable(cacheNames = "reviews", key = "#id")
     public Review getReviewsById(Long id) {
-        final String QUERY = "SELECT r.review_id, r.content, r.is_positive, u.name AS user_name, f.name AS film_name, " +
-                "r.user_id, r.film_id, " +
-                "COALESCE(SUM(CASE WHEN uf.like_id IS NOT NULL THEN 1 ELSE 0 END), 0) AS likes, " +
-                "COALESCE(SUM(CASE WHEN uf.dislike_id IS NOT NULL THEN 1 ELSE 0 END), 0) AS dislikes " +
-                "FROM reviews r " +
-                "JOIN users u ON r.user_id = u.user_id " +
-                "JOIN films f ON r.film_id = f.film_id " +
-                "LEFT JOIN useful uf ON r.review_id = uf.useful_id " +
-                "WHERE r.review_id = ? " +
-                "GROUP BY r.review_id, r.content, r.is_positive, u.name, f.name, r.user_id, r.film_id";
-
-        Review review = jdbc.queryForObject(QUERY, reviewMapper, id);
+        Review review = jdbc.queryForObject(SELECT_REVIEWS_QUERY + "WHERE review_id = ?", reviewMapper, id);
         log.info("get review");
         return review;
     }
 
+    @Override
+    public List<Review> getReviewsByIds(Collection<Long> ids) {
+        List<Long> distinctIds = ids.stream().distinct().toList();
+        List<Review> reviews = new ArrayList<>(distinctIds.size());
+        for (int from = 0; from < distinctIds.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            List<Long> chunk = distinctIds.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, distinctIds.size()));
+            String sql = SELECT_REVIEWS_QUERY + "WHERE review_id IN (" +
+                    String.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+            reviews.addAll(jdbc.query(sql, reviewMapper, chunk.toArray()));
+        }
+        return reviews;
+    }
+
+    /**
+     * Читает текущую полезность отзыва из базы в обход кеша отзывов.
+     */
+    @Override
+    public Optional<Integer> getUseful(Long reviewId) {
+        return jdbc.queryForList("SELECT useful FROM reviews WHERE review_id = ?", Integer.class, reviewId)
+                .stream()
+                .findFirst();
+    }
+
     @Override
     public List<Review> getReviewsByFilm(Long id, int count) {
-        final String sql = "SELECT r.review_id, r.content, r.is_positive, u.name AS user_name, f.name AS film_name, " +
-                "r.user_id, r.film_id, " +
-                "COALESCE(SUM(CASE WHEN uf.like_id IS NOT NULL THEN 1 ELSE 0 END), 0) AS likes, " +
-                "COALESCE(SUM(CASE WHEN uf.dislike_id IS NOT NULL THEN 1 ELSE 0 END), 0) AS dislikes " +
-                "FROM reviews r " +
-                "JOIN users u ON r.user_id = u.user_id " +
-                "JOIN films f ON r.film_id = f.film_id " +
-                "LEFT JOIN useful uf ON r.review_id = uf.useful_id " +
-                "WHERE r.film_id = ? " +
-                "GROUP BY r.review_id, r.content, r.is_positive, u.name, f.name, r.user_id, r.film_id " +
-                "LIMIT ?";
-        List<Review> reviews = jdbc.query(sql, reviewMapper, id, count);
-        return reviews.stream().sorted((r1, r2) -> r2.getUseful() - r1.getUseful()).toList();
+        return jdbc.query(SELECT_REVIEWS_QUERY + "WHERE film_id = ? ORDER BY useful DESC, review_id LIMIT ?",
+                reviewMapper, id, count);
     }
 
     @Override
     public List<Review> getAllReviews(int count) {
-        final String sql = "SELECT r.REVIEW_ID, r.CONTENT, r.IS_POSITIVE, r.USER_ID, r.FILM_ID, " +
-                "COUNT(u.LIKE_ID) AS likes, COUNT(u.DISLIKE_ID) AS dislikes " +
-                "FROM REVIEWS r LEFT JOIN USEFUL u ON u.USEFUL_ID = r.REVIEW_ID " +
-                "GROUP BY r.REVIEW_ID, r.CONTENT, r.IS_POSITIVE, r.USER_ID, r.FILM_ID LIMIT ?";
-        try {
-            List<Review> reviews = jdbc.query(sql, reviewMapper, count);
-            return reviews.stream().sorted((r1, r2) -> r2.getUseful() - r1.getUseful()).toList();
-        } catch (Throwable e) {
-            e.printStackTrace();
-        }
-        return null;
+        return jdbc.query(SELECT_REVIEWS_QUERY + "ORDER BY useful DESC, review_id LIMIT ?", reviewMapper, count);
     }
 
     @Override
+    @Transactional
+    @CacheEvict(cacheNames = "reviews", key = "#reviewId")
     public void likeToReview(Long reviewId, Long userId) {
-        String checkSql = "SELECT * FROM useful WHERE useful_id = ? AND like_id = ? OR useful_id = ? AND dislike_id = ?";
-        List<Map<String, Object>> existingLikeDislike = jdbc.queryForList(checkSql, reviewId, userId, reviewId, userId);
-
-        if (!existingLikeDislike.isEmpty()) {
-            String updateSql;
-            if (existingLikeDislike.get(0).get("like_id") != null) {
-                updateSql = "UPDATE useful SET like_id = NULL, dislike_id = ? WHERE useful_id = ? AND like_id = ?";
-                jdbc.update(updateSql, userId, reviewId, userId);
-            } else {
-                updateSql = "UPDATE useful SET dislike_id = NULL, like_id = ? WHERE useful_id = ? AND dislike_id = ?";
-                jdbc.update(updateSql, userId, reviewId, userId);
-            }
-        } else {
-            String insertSql = "INSERT INTO useful (useful_id, like_id, dislike_id) VALUES (?, ?, NULL)";
-            jdbc.update(insertSql, reviewId, userId);
-        }
+        vote(reviewId, userId, LIKE);
         log.info("Лайк для отзыва {} добавлен или обновлен для пользователя {}", reviewId, userId);
     }
 
     @Override
+    @Transactional
+    @CacheEvict(cacheNames = "reviews", key = "#reviewId")
     public void dislikeToReview(Long reviewId, Long userId) {
-        String checkSql = "SELECT * FROM useful WHERE useful_id = ? AND like_id = ? OR useful_id = ? AND dislike_id = ?";
-        List<Map<String, Object>> existingLikeDislike = jdbc.queryForList(checkSql, reviewId, userId, reviewId, userId);
-
-        if (!existingLikeDislike.isEmpty()) {
-            String updateSql;
-            if (existingLikeDislike.get(0).get("dislike_id") != null) {
-                updateSql = "UPDATE useful SET dislike_id = NULL, like_id = ? WHERE useful_id = ? AND dislike_id = ?";
-                jdbc.update(updateSql, userId, reviewId, userId);
-            } else {
-                updateSql = "UPDATE useful SET like_id = NULL, dislike_id = ? WHERE useful_id = ? AND like_id = ?";
-                jdbc.update(updateSql, userId, reviewId, userId);
-            }
-        } else {
-            String insertSql = "INSERT INTO useful (useful_id, like_id, dislike_id) VALUES (?, NULL, ?)";
-            jdbc.update(insertSql, reviewId, userId);
-        }
+        vote(reviewId, userId, DISLIKE);
         log.info("Дизлайк для отзыва {} добавлен или обновлен для пользователя {}", reviewId, userId);
     }
 
     @Override
+    @Transactional
+    @CacheEvict(cacheNames = "reviews", key = "#reviewId")
     public void deleteLike(Long reviewId, Long userId) {
-        final String sql = "DELETE FROM useful WHERE useful_id = ? AND like_id = ?";
         log.info("Удаление лайка");
-        jdbc.update(sql, reviewId, userId);
+        deleteVote(reviewId, userId, LIKE);
         log.info("Лайк удален");
     }
 
     @Override
+    @Transactional
+    @CacheEvict(cacheNames = "reviews", key = "#reviewId")
     public void deleteDislike(Long reviewId, Long userId) {
-        final String sql = "DELETE FROM useful WHERE useful_id = ? AND dislike_id = ?";
         log.info("Удаление дислака");
-        jdbc.update(sql, reviewId, userId);
+        deleteVote(reviewId, userId, DISLIKE);
         log.info("Дислайк удален");
     }
+
+    @Override
+    public Map<Long, Integer> getUsefulByFilm(Long filmId) {
+        final String sql = "SELECT review_id, useful FROM reviews WHERE film_id = ?";
+        Map<Long, Integer> useful = new HashMap<>();
+        jdbc.query(sql, rs -> {
+            useful.put(rs.getLong("review_id"), rs.getInt("useful"));
+        }, filmId);
+        return useful;
+    }
+
+    /**
+     * Записывает голос пользователя и сдвигает оценку отзыва на разницу с прежним голосом.
+     * Повторный такой же голос ничего не меняет, противоположный заменяет прежний.
+     * Голоса за отзыв выполняются по очереди под блокировкой строки отзыва, поэтому два первых голоса
+     * одного пользователя не вставят две строки. Запросы обычные, без MERGE, и работают в H2 и PostgreSQL.
+     */
+    private void vote(Long reviewId, Long userId, int vote) {
+        lockReview(reviewId);
+        List<Integer> previous = jdbc.queryForList(SELECT_VOTE_QUERY, Integer.class, reviewId, userId);
+        if (previous.isEmpty()) {
+            jdbc.update("INSERT INTO useful (review_id, user_id, vote) VALUES (?, ?, ?)", reviewId, userId, vote);
+            changeUseful(reviewId, vote);
+        } else if (previous.getFirst() != vote) {
+            jdbc.update("UPDATE useful SET vote = ? WHERE review_id = ? AND user_id = ?", vote, reviewId, userId);
+            changeUseful(reviewId, vote - previous.getFirst());
+        }
+    }
+
+    private void deleteVote(Long reviewId, Long userId, int vote) {
+        lockReview(reviewId);
+        final String sql = "DELETE FROM useful WHERE review_id = ? AND user_id = ? AND vote = ?";
+        changeUseful(reviewId, -vote * jdbc.update(sql, reviewId, userId, vote));
+    }
+
+    /**
+     * Читает автора, фильм и полезность отзыва и блокирует его строку до конца транзакции.
+     */
+    private Review lockReviewOwner(Long id) {
+        final String sql = "SELECT user_id, film_id, useful FROM reviews WHERE review_id = ? FOR UPDATE";
+        List<Review> owners = jdbc.query(sql, (rs, rowNum) -> Review.builder()
+                .userId(rs.getLong("user_id"))
+                .filmId(rs.getLong("film_id"))
+                .useful(rs.getInt("useful"))
+                .build(), id);
+        if (owners.isEmpty()) {
+            log.error("Отзыв с id={} не найден", id);
+            throw new ResourceNotFoundException("Отзыв с указанным id не найден");
+        }
+        return owners.getFirst();
+    }
+
+    /**
+     * Блокирует строку отзыва до конца транзакции. Изменения голосов сначала берут эту блокировку,
+     * а потом блокировки строк голосов, поэтому одновременные голоса не попадают во взаимную блокировку.
+     */
+    private void lockReview(Long reviewId) {
+        jdbc.queryForList(LOCK_REVIEW_QUERY, Long.class, reviewId);
+    }
+
+    private void changeUseful(Long reviewId, int delta) {
+        if (delta != 0) {
+            jdbc.update("UPDATE reviews SET useful = useful + ? WHERE review_id = ?", delta, reviewId);
+        }
+    }
 }
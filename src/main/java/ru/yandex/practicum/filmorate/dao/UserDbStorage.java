@@ -3,12 +3,17 @@ package ru.yandex.practicum.filmorate.dao;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.context.annotation.Primary;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dao.Mapper.UserMapper;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
@@ -16,8 +21,15 @@ import ru.yandex.practicum.filmorate.storage.UserStorage;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
-import java.sql.Statement;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Repository
 @Slf4j
@@ -25,18 +37,49 @@ import java.util.Collection;
 @Qualifier("userDbStorage")
 @RequiredArgsConstructor
 public class UserDbStorage implements UserStorage {
+    private static final int USERS_PAGE_SIZE = 500;
+    private static final int IN_CLAUSE_CHUNK_SIZE = 500;
     private static final String INSERT_QUERY = "INSERT INTO users (email, login, name, birth_day) " +
             "VALUES (?, ?, ?, ?)";
 
     private final JdbcTemplate jdbc;
     private final UserMapper userMapper;
 
+    @Override
+    public Set<Long> getExistingUserIds(Collection<Long> ids) {
+        List<Long> distinctIds = ids.stream().distinct().toList();
+        Set<Long> existing = new HashSet<>();
+        for (int from = 0; from < distinctIds.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            List<Long> chunk = distinctIds.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, distinctIds.size()));
+            String sql = "SELECT user_id FROM users WHERE user_id IN (" +
+                    String.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+            existing.addAll(jdbc.queryForList(sql, Long.class, chunk.toArray()));
+        }
+        return existing;
+    }
+
+    /**
+     * Пользователи с указанными id в порядке возрастания id, несуществующие id пропускаются.
+     */
+    @Override
+    public List<User> getUsersByIds(Collection<Long> ids) {
+        List<Long> sortedIds = ids.stream().distinct().sorted().toList();
+        List<User> users = new ArrayList<>(sortedIds.size());
+        for (int from = 0; from < sortedIds.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            List<Long> chunk = sortedIds.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, sortedIds.size()));
+            String sql = "SELECT * FROM users WHERE user_id IN (" +
+                    String.join(",", Collections.nCopies(chunk.size(), "?")) + ") ORDER BY user_id";
+            users.addAll(jdbc.query(sql, userMapper::mapToUser, chunk.toArray()));
+        }
+        return users;
+    }
+
     @Override
     public User addUser(User user) {
         KeyHolder keyHolder = new GeneratedKeyHolder();
         try {
             jdbc.update(con -> {
-                PreparedStatement ps = con.prepareStatement(INSERT_QUERY, Statement.RETURN_GENERATED_KEYS);
+                PreparedStatement ps = con.prepareStatement(INSERT_QUERY, new String[]{"user_id"});
                 userMapper.setUserParameters(ps, user);
                 return ps;
             }, keyHolder);
@@ -50,6 +93,32 @@ public class UserDbStorage implements UserStorage {
         }
     }
 
+    @Override
+    @Transactional
+    public List<User> addUsers(List<User> users) {
+        if (users.isEmpty()) {
+            return users;
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.batchUpdate(con -> con.prepareStatement(INSERT_QUERY, new String[]{"user_id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        userMapper.setUserParameters(ps, users.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return users.size();
+                    }
+                }, keyHolder);
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < users.size(); i++) {
+            users.get(i).setId(((Number) keys.get(i).values().iterator().next()).longValue());
+        }
+        return users;
+    }
+
     @Override
     public Collection<User> getUsers() {
         final String GET_USERS_QUERY = "SELECT * FROM users";
@@ -57,6 +126,26 @@ public class UserDbStorage implements UserStorage {
     }
 
     @Override
+    public List<User> getUsersPage(long afterId, int limit) {
+        final String GET_USERS_PAGE_QUERY = "SELECT * FROM users WHERE user_id > ? ORDER BY user_id LIMIT ?";
+        return jdbc.query(GET_USERS_PAGE_QUERY, userMapper::mapToUser, afterId, limit);
+    }
+
+    @Override
+    public void streamUsers(Consumer<User> consumer) {
+        List<User> page;
+        long lastId = 0;
+        do {
+            page = getUsersPage(lastId, USERS_PAGE_SIZE);
+            page.forEach(consumer);
+            if (!page.isEmpty()) {
+                lastId = page.getLast().getId();
+            }
+        } while (page.size() == USERS_PAGE_SIZE);
+    }
+
+    @Override
+    @Cacheable(cacheNames = "users", key = "#id")
     public User getUserById(Long id) {
         final String GET_USER_BY_ID_QUERY = "SELECT * FROM users WHERE user_id = ?";
         try {
@@ -68,6 +157,7 @@ public class UserDbStorage implements UserStorage {
     }
 
     @Override
+    @CacheEvict(cacheNames = "users", key = "#newUser.id")
     public User updateUser(User newUser) {
         final String UPDATE_USER_QUERY = "UPDATE users SET email = ?, login = ?, name = ?, birth_day = ? WHERE user_id = ?";
         int rowsUpdated = jdbc.update(UPDATE_USER_QUERY,
@@ -85,17 +175,32 @@ public class UserDbStorage implements UserStorage {
     }
 
     @Override
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = "users", key = "#id"),
+            @CacheEvict(cacheNames = "reviews", allEntries = true)
+    })
     public void deleteUser(Long id) {
         String deleteFriendshipsSql = "DELETE FROM friendship WHERE user_id = ? OR friend_id = ?";
+        String decrementLikeCountSql = "UPDATE films SET like_count = like_count - 1 " +
+                "WHERE film_id IN (SELECT film_id FROM likes WHERE user_id = ?)";
         String deleteLikesSql = "DELETE FROM likes WHERE user_id = ?";
+        String subtractVotesSql = "UPDATE reviews r SET useful = useful - (" +
+                "SELECT u.vote FROM useful u WHERE u.review_id = r.review_id AND u.user_id = ?) " +
+                "WHERE r.review_id IN (SELECT review_id FROM useful WHERE user_id = ?)";
+        String deleteUsefulSql = "DELETE FROM useful WHERE user_id = ?";
+        String deleteReviewsUsefulSql = "DELETE FROM useful " +
+                "WHERE review_id IN (SELECT review_id FROM reviews WHERE user_id = ?)";
         String deleteReviewsSql = "DELETE FROM reviews WHERE user_id = ?";
-        String deleteUsefulSql = "DELETE FROM useful WHERE like_id = ? OR dislike_id = ?";
         String deleteFeedSql = "DELETE FROM feed WHERE user_id = ?";
 
         jdbc.update(deleteFriendshipsSql, id, id);
+        jdbc.update(decrementLikeCountSql, id);
         jdbc.update(deleteLikesSql, id);
+        jdbc.update(subtractVotesSql, id, id);
+        jdbc.update(deleteUsefulSql, id);
+        jdbc.update(deleteReviewsUsefulSql, id);
         jdbc.update(deleteReviewsSql, id);
-        jdbc.update(deleteUsefulSql, id, id);
 
         String deleteUserSql = "DELETE FROM users WHERE user_id = ?";
         jdbc.update(deleteUserSql, id);
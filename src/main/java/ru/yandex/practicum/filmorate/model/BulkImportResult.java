@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class BulkImportResult {
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private int total;
+    private int imported;
+    private int skipped;
+    private int failed;
+    private final List<RowError> errors = new ArrayList<>();
+
+    /**
+     * Учитывает ошибочную строку. В отчет попадают только первые ошибки, остальные лишь считаются.
+     */
+    public void addError(int row, String message) {
+        failed++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(new RowError(row, message));
+        }
+    }
+
+    public record RowError(int row, String message) {
+    }
+}
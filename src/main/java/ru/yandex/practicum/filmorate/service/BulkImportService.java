@@ -0,0 +1,220 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.BulkImportResult;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Массовая загрузка фильмов и пользователей. Тело запроса разбирается потоково — JSON-массив
+ * или NDJSON, — строки проверяются по справочникам в памяти и пишутся пакетами,
+ * каждый пакет в своей транзакции. Ошибочные строки попадают в отчет и не прерывают загрузку.
+ */
+@Slf4j
+@Service
+public class BulkImportService {
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final GenreStorage genreStorage;
+    private final MpaStorage mpaStorage;
+    private final DirectorStorage directorStorage;
+    private final PopularityLeaderboard popularityLeaderboard;
+    private final FilmSearchIndex filmSearchIndex;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    @Autowired
+    public BulkImportService(@Qualifier("filmDbStorage") FilmStorage filmStorage,
+                             @Qualifier("userDbStorage") UserStorage userStorage,
+                             GenreStorage genreStorage, MpaStorage mpaStorage, DirectorStorage directorStorage,
+                             PopularityLeaderboard popularityLeaderboard, FilmSearchIndex filmSearchIndex,
+                             ObjectMapper objectMapper, Validator validator,
+                             TransactionTemplate transactionTemplate,
+                             @Value("${filmorate.import.batch-size:1000}") int batchSize) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.genreStorage = genreStorage;
+        this.mpaStorage = mpaStorage;
+        this.directorStorage = directorStorage;
+        this.popularityLeaderboard = popularityLeaderboard;
+        this.filmSearchIndex = filmSearchIndex;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+    }
+
+    public BulkImportResult importFilms(InputStream body) {
+        Set<Long> directorIds = directorStorage.getAllDirectors().stream()
+                .map(Director::getId)
+                .collect(Collectors.toSet());
+        BulkImportResult result = importRows(body, Film.class, film -> checkFilm(film, directorIds),
+                filmStorage::addFilms, films -> films.forEach(film -> {
+                    popularityLeaderboard.addFilm(film);
+                    filmSearchIndex.putFilm(film);
+                }));
+        log.info("Загрузка фильмов завершена: {} из {} строк, ошибок {}", result.getImported(),
+                result.getTotal(), result.getFailed());
+        return result;
+    }
+
+    public BulkImportResult importUsers(InputStream body) {
+        BulkImportResult result = importRows(body, User.class, this::checkUser, userStorage::addUsers, users -> {
+        });
+        log.info("Загрузка пользователей завершена: {} из {} строк, ошибок {}", result.getImported(),
+                result.getTotal(), result.getFailed());
+        return result;
+    }
+
+    private String checkFilm(Film film, Set<Long> directorIds) {
+        if (film.getMpa() == null || film.getMpa().getId() == null || !mpaStorage.mpaExists(film.getMpa().getId())) {
+            return "Рейтинг с ID " + (film.getMpa() == null ? null : film.getMpa().getId()) + " не найден.";
+        }
+        for (Genre genre : film.getGenres()) {
+            if (genre.getId() == null || !genreStorage.genreExists(genre.getId())) {
+                return "Жанр с ID " + genre.getId() + " не найден.";
+            }
+        }
+        for (Director director : film.getDirectors()) {
+            if (!directorIds.contains(director.getId())) {
+                return "Режиссер с ID " + director.getId() + " не найден.";
+            }
+        }
+        return null;
+    }
+
+    private String checkUser(User user) {
+        if (user.getName() == null || user.getName().isBlank()) {
+            user.setName(user.getLogin());
+        }
+        return null;
+    }
+
+    /**
+     * @param check    проверяет строку и при необходимости дополняет её; возвращает текст ошибки или {@code null}
+     * @param save     записывает пакет строк
+     * @param afterSave обновляет структуры в памяти после фиксации пакета
+     */
+    private <T> BulkImportResult importRows(InputStream body, Class<T> type, Function<T, String> check,
+                                            UnaryOperator<List<T>> save, Consumer<List<T>> afterSave) {
+        BulkImportResult result = new BulkImportResult();
+        List<Row<T>> batch = new ArrayList<>(batchSize);
+        try (MappingIterator<T> rows = objectMapper.readerFor(type).readValues(body)) {
+            while (true) {
+                int row = result.getTotal() + 1;
+                T value;
+                try {
+                    if (!rows.hasNextValue()) {
+                        break;
+                    }
+                    result.setTotal(row);
+                    value = rows.nextValue();
+                } catch (JsonParseException e) {
+                    result.setTotal(row);
+                    result.addError(row, "Некорректный JSON: " + e.getOriginalMessage());
+                    break;
+                } catch (JsonMappingException e) {
+                    result.addError(row, "Некорректное значение: " + e.getOriginalMessage());
+                    continue;
+                }
+
+                String error = validate(value);
+                if (error == null) {
+                    error = check.apply(value);
+                }
+                if (error != null) {
+                    result.addError(row, error);
+                    continue;
+                }
+                batch.add(new Row<>(row, value));
+                if (batch.size() >= batchSize) {
+                    flush(batch, save, afterSave, result);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Ошибка чтения тела запроса массовой загрузки: {}", e.getMessage());
+            result.addError(result.getTotal(), "Ошибка чтения запроса: " + e.getMessage());
+        }
+        flush(batch, save, afterSave, result);
+        return result;
+    }
+
+    private <T> String validate(T value) {
+        Set<ConstraintViolation<T>> violations = validator.validate(value);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    /**
+     * Пишет пакет в одной транзакции. Если пакет не записался, повторяет его построчно,
+     * чтобы записать корректные строки и указать в отчете, какие именно строки ошибочны.
+     */
+    private <T> void flush(List<Row<T>> batch, UnaryOperator<List<T>> save, Consumer<List<T>> afterSave,
+                           BulkImportResult result) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<T> values = batch.stream().map(Row::value).toList();
+        try {
+            transactionTemplate.executeWithoutResult(status -> save.apply(values));
+            afterSave.accept(values);
+            result.setImported(result.getImported() + values.size());
+        } catch (RuntimeException e) {
+            log.warn("Пакет строк {}-{} не записан, повторяем построчно: {}", batch.getFirst().number(),
+                    batch.getLast().number(), e.getMessage());
+            for (Row<T> row : batch) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> save.apply(List.of(row.value())));
+                    afterSave.accept(List.of(row.value()));
+                    result.setImported(result.getImported() + 1);
+                } catch (DataIntegrityViolationException rowException) {
+                    result.addError(row.number(), "Нарушено ограничение уникальности или целостности данных");
+                } catch (RuntimeException rowException) {
+                    result.addError(row.number(), "Ошибка записи в базу данных");
+                }
+            }
+        }
+        batch.clear();
+    }
+
+    private record Row<T>(int number, T value) {
+    }
+}
@@ -5,6 +5,7 @@ import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.storage.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.FilmSearchIndex;
 
 import java.util.List;
 import java.util.Optional;
@@ -13,9 +14,11 @@ import java.util.Optional;
 @Slf4j
 public class DirectorService {
     private final DirectorStorage directorStorage;
+    private final FilmSearchIndex filmSearchIndex;
 
-    public DirectorService(DirectorStorage directorStorage) {
+    public DirectorService(DirectorStorage directorStorage, FilmSearchIndex filmSearchIndex) {
         this.directorStorage = directorStorage;
+        this.filmSearchIndex = filmSearchIndex;
     }
 
     public List<Director> getAllDirectors() {
@@ -33,17 +36,22 @@ public class DirectorService {
             throw new ValidationException("Нельзя добавить режиссера без имени");
         }
         log.info("Добавление режиссера: {}", director.getName());
-        return directorStorage.addDirector(director);
+        Director addedDirector = directorStorage.addDirector(director);
+        filmSearchIndex.putDirector(addedDirector);
+        return addedDirector;
     }
 
     public Director updateDirector(Director director) {
         directorStorage.getDirectorById(director.getId());
         log.info("Обновление режиссера: {}", director.getName());
-        return directorStorage.updateDirector(director);
+        Director updatedDirector = directorStorage.updateDirector(director);
+        filmSearchIndex.putDirector(updatedDirector);
+        return updatedDirector;
     }
 
     public void deleteDirector(Long id) {
         log.info("Удаление режиссера c ID: {}", id);
         directorStorage.deleteDirector(id);
+        filmSearchIndex.removeDirector(id);
     }
 }
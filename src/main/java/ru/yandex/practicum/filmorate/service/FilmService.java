@@ -2,35 +2,103 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.ResourceNotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BulkImportResult;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.*;
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class FilmService {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final FilmStorage filmStorage;
     private final UserStorage userStorage;
     private final MpaStorage mpaStorage;
     private final GenreStorage genreStorage;
     private final LikeStorage likeStorage;
+    private final PopularityLeaderboard popularityLeaderboard;
+    private final DirectorStorage directorStorage;
+    private final FilmSearchIndex filmSearchIndex;
+    private final LikeGraph likeGraph;
+    private final RecommendationCache recommendationCache;
+    private final ReviewRanking reviewRanking;
+    private final int likesBatchSize;
 
     public FilmService(@Qualifier("filmDbStorage") FilmStorage filmStorage,
                        @Qualifier("userDbStorage") UserStorage userStorage, MpaStorage mpaStorage,
                        GenreStorage genreStorage,
-                       @Qualifier("likeDbStorage") LikeStorage likeStorage) {
+                       @Qualifier("likeDbStorage") LikeStorage likeStorage,
+                       PopularityLeaderboard popularityLeaderboard,
+                       DirectorStorage directorStorage,
+                       FilmSearchIndex filmSearchIndex,
+                       LikeGraph likeGraph,
+                       RecommendationCache recommendationCache,
+                       ReviewRanking reviewRanking,
+                       @Value("${filmorate.import.batch-size:1000}") int likesBatchSize) {
         this.filmStorage = filmStorage;
         this.userStorage = userStorage;
         this.mpaStorage = mpaStorage;
         this.genreStorage = genreStorage;
         this.likeStorage = likeStorage;
+        this.popularityLeaderboard = popularityLeaderboard;
+        this.directorStorage = directorStorage;
+        this.filmSearchIndex = filmSearchIndex;
+        this.likeGraph = likeGraph;
+        this.recommendationCache = recommendationCache;
+        this.reviewRanking = reviewRanking;
+        this.likesBatchSize = likesBatchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadIndexes() {
+        log.info("Загрузка рейтинга популярности, поискового индекса и графа лайков");
+        Collection<Film> films = filmStorage.getFilms();
+        popularityLeaderboard.load(films, likeStorage.getLikeCounts());
+        filmSearchIndex.load(films, directorStorage.getAllDirectors());
+        likeGraph.load(likeStorage::getLikedFilmIdsByUser);
+    }
+
+    public void loadPopularity() {
+        log.info("Загрузка рейтинга популярности фильмов");
+        popularityLeaderboard.load(filmStorage.getFilms(), likeStorage.getLikeCounts());
+    }
+
+    /**
+     * Сверяет рейтинг популярности с лайками в базе и перезагружает его при расхождении.
+     * Запускается по расписанию, пока рейтинг не загружен, проверка пропускается.
+     */
+    @Scheduled(initialDelayString = "${filmorate.popularity.verify-interval-ms:600000}",
+            fixedDelayString = "${filmorate.popularity.verify-interval-ms:600000}")
+    public void scheduledVerifyPopularity() {
+        if (popularityLeaderboard.isReady()) {
+            verifyPopularity();
+        }
+    }
+
+    public List<Long> verifyPopularity() {
+        List<Long> mismatched = popularityLeaderboard.verify(likeStorage.getLikeCounts());
+        if (!mismatched.isEmpty()) {
+            log.warn("Рейтинг популярности расходится с базой для фильмов {}, перезагружаем", mismatched);
+            loadPopularity();
+        }
+        return mismatched;
     }
 
     public List<Genre> getAllGenres() {
@@ -54,12 +122,26 @@ public class FilmService {
         return filmStorage.getFilms();
     }
 
+    public List<Film> getFilmsPage(Long after, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (pageSize <= 0) {
+            throw new ValidationException("Размер страницы должен быть положительным числом");
+        }
+        log.info("Получение страницы фильмов после id {} размером {}", after, pageSize);
+        return filmStorage.getFilmsPage(after == null ? 0 : after, Math.min(pageSize, MAX_PAGE_SIZE));
+    }
+
+    public void streamFilms(Consumer<Film> consumer) {
+        log.info("Потоковая выгрузка всех фильмов.");
+        filmStorage.streamFilms(consumer);
+    }
+
     public Film getFilm(long filmId) {
         return filmStorage.getFilmById(filmId);
     }
 
     public List<Film> getFilmsByIds(List<Long> ids) {
-        return filmStorage.getFilmsByIds(ids);
+        return getFilmsInOrder(ids);
     }
 
     public List<Film> getFilmsByDirector(long directorId, String sortBy) {
@@ -69,7 +151,10 @@ public class FilmService {
     public Film addFilm(Film film) {
         try {
             log.info("Добавление фильма: {}", film.getName());
-            return filmStorage.addFilm(film);
+            Film addedFilm = filmStorage.addFilm(film);
+            popularityLeaderboard.addFilm(addedFilm);
+            filmSearchIndex.putFilm(addedFilm);
+            return addedFilm;
         } catch (Exception e) {
             log.info("Error added", e.getMessage());
             throw new ValidationException("Error added");
@@ -78,24 +163,96 @@ public class FilmService {
     }
 
     public Film updateFilm(Film film) {
-        filmStorage.getFilmById(film.getId());
         log.info("Обновление фильма: {}", film.getName());
-        return filmStorage.updateFilm(film);
+        Film updatedFilm = filmStorage.updateFilm(film);
+        popularityLeaderboard.updateFilm(updatedFilm);
+        filmSearchIndex.putFilm(updatedFilm);
+        return updatedFilm;
     }
 
     public void addLike(long filmId, long userId) {
         log.info("Добавление лайка от пользователя с ID {} для фильма с ID {}", userId, filmId);
-        likeStorage.addLike(filmStorage.getFilmById(filmId), userStorage.getUserById(userId));
+        Film film = filmStorage.getFilmById(filmId);
+        User user = userStorage.getUserById(userId);
+        if (likeGraph.addLike(userId, filmId, () -> likeStorage.addLike(film, user))) {
+            popularityLeaderboard.changeLikes(filmId, 1);
+            recommendationCache.invalidate(userId);
+        }
+    }
+
+    /**
+     * Добавляет лайки пакетами. Повторы внутри запроса отбрасываются, фильмы и пользователи
+     * проверяются одним запросом на каждый тип, а рейтинг, граф лайков и кеш рекомендаций
+     * обновляются один раз на пакет.
+     */
+    public BulkImportResult addLikes(List<Like> likes) {
+        BulkImportResult result = new BulkImportResult();
+        result.setTotal(likes.size());
+        Map<Like, Integer> rows = new LinkedHashMap<>();
+        for (int i = 0; i < likes.size(); i++) {
+            Like like = likes.get(i);
+            if (like == null || like.getFilmId() == null || like.getUserId() == null) {
+                result.addError(i + 1, "Должны быть указаны filmId и userId");
+            } else {
+                rows.putIfAbsent(like, i + 1);
+            }
+        }
+
+        Set<Long> filmIds = filmStorage.getExistingFilmIds(rows.keySet().stream().map(Like::getFilmId).toList());
+        Set<Long> userIds = userStorage.getExistingUserIds(rows.keySet().stream().map(Like::getUserId).toList());
+        List<Like> validLikes = new ArrayList<>(rows.size());
+        rows.forEach((like, row) -> {
+            if (!filmIds.contains(like.getFilmId())) {
+                result.addError(row, "Фильм с ID " + like.getFilmId() + " не найден");
+            } else if (!userIds.contains(like.getUserId())) {
+                result.addError(row, "Пользователь с ID " + like.getUserId() + " не найден");
+            } else {
+                validLikes.add(like);
+            }
+        });
+
+        for (int from = 0; from < validLikes.size(); from += likesBatchSize) {
+            List<Like> batch = validLikes.subList(from, Math.min(from + likesBatchSize, validLikes.size()));
+            List<Like> added = likeGraph.addLikes(() -> likeStorage.addLikes(batch));
+            popularityLeaderboard.changeLikes(added.stream()
+                    .collect(Collectors.groupingBy(Like::getFilmId, Collectors.summingInt(like -> 1))));
+            recommendationCache.invalidate(added.stream().map(Like::getUserId).collect(Collectors.toSet()));
+            result.setImported(result.getImported() + added.size());
+        }
+        result.setSkipped(result.getTotal() - result.getImported() - result.getFailed());
+        log.info("Пакетное добавление лайков: добавлено {} из {}, ошибок {}", result.getImported(),
+                result.getTotal(), result.getFailed());
+        return result;
     }
 
     public void deleteLike(long filmId, long userId) {
         log.info("Удаление лайка от пользователя с ID {} для фильма с ID {}", userId, filmId);
-        likeStorage.deleteLike(filmStorage.getFilmById(filmId), userStorage.getUserById(userId));
+        Film film = filmStorage.getFilmById(filmId);
+        User user = userStorage.getUserById(userId);
+        if (likeGraph.removeLike(userId, filmId, () -> likeStorage.deleteLike(film, user))) {
+            popularityLeaderboard.changeLikes(filmId, -1);
+            recommendationCache.invalidate(userId);
+        }
     }
 
     public List<Film> getPopularFilms(int count, Integer genreId, Integer year) {
         log.info("Возврат топ-{} популярных фильмов", count);
-        return filmStorage.getPopularFilms(count, genreId, year);
+        if (!popularityLeaderboard.isReady()) {
+            return filmStorage.getPopularFilms(count, genreId, year);
+        }
+        return getFilmsInOrder(popularityLeaderboard.getTop(count, genreId, year));
+    }
+
+    private List<Film> getFilmsInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Film> filmsById = filmStorage.getFilmsByIds(ids).stream()
+                .collect(Collectors.toMap(Film::getId, Function.identity()));
+        return ids.stream()
+                .map(filmsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
 
@@ -103,8 +260,8 @@ public class FilmService {
         return likeStorage.getFriendsOfInterestDB(userId);
     }
 
-    public List<Long> getRecommendedFilms(Long userId, List<Long> friendsOfInterestIds) {
-        return likeStorage.getRecommendedFilmsDB(userId, friendsOfInterestIds);
+    public List<Long> getRecommendedFilms(Long userId, List<Long> friendsOfInterestIds, int limit) {
+        return likeStorage.getRecommendedFilmsDB(userId, friendsOfInterestIds, limit);
     }
 
     public List<Film> getPopularCommonFilms(Long userId, Long friendId) {
@@ -119,26 +276,47 @@ public class FilmService {
     public void deleteFilm(Long id) {
         try {
             log.info("Попытка удаления фильма с id {}", id);
-            filmStorage.deleteFilm(id);
+            likeGraph.removeFilm(id, () -> filmStorage.deleteFilm(id));
+            popularityLeaderboard.removeFilm(id);
+            filmSearchIndex.removeFilm(id);
+            recommendationCache.clear();
+            reviewRanking.removeFilm(id);
         } catch (Exception e) {
             log.info("Ошибка удаления фильма с id {}: {}", id, e.getMessage());
             throw new ResourceNotFoundException("Фильм с id " + id + " не найден");
         }
     }
 
-    public List<Film> searchFilms(String query, String by) {
+    public List<Film> searchFilms(String query, String by, int count, int offset) {
         if (query == null && by == null) {
             return new ArrayList<>(filmStorage.getPopularFilms(10, null, null));
         }
         if (query == null || query.isBlank()) {
             return Collections.emptyList();
         }
-        if (by.contains("director") && by.contains("title")) {
-            return filmStorage.searchFilmsTitleAndDirector(query);
-        } else if (by.contains("director")) {
-            return filmStorage.searchFilmsDirector(query);
-        } else if (by.contains("title")) {
-            return filmStorage.searchFilmsTitle(query);
+        if (by == null) {
+            throw new ValidationException("Не указано, где искать: параметр by должен содержать title и/или director");
+        }
+        if (count <= 0 || offset < 0) {
+            throw new ValidationException("Некорректные параметры страницы поиска");
+        }
+        int limit = Math.min(count, MAX_PAGE_SIZE);
+        boolean byTitle = by.contains("title");
+        boolean byDirector = by.contains("director");
+        if (filmSearchIndex.isReady() && (byTitle || byDirector)) {
+            log.info("Поиск фильмов по запросу {} в индексе", query);
+            List<Long> ids = filmSearchIndex.search(query, byTitle, byDirector, popularityLeaderboard::getLikes);
+            if (offset >= ids.size()) {
+                return Collections.emptyList();
+            }
+            return getFilmsInOrder(ids.subList(offset, Math.min(offset + limit, ids.size())));
+        }
+        if (byDirector && byTitle) {
+            return filmStorage.searchFilmsTitleAndDirector(query, limit, offset);
+        } else if (byDirector) {
+            return filmStorage.searchFilmsDirector(query, limit, offset);
+        } else if (byTitle) {
+            return filmStorage.searchFilmsTitle(query, limit, offset);
         }
         return Collections.emptyList();
     }
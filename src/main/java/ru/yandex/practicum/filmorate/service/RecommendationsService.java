@@ -1,44 +1,111 @@
 package ru.yandex.practicum.filmorate.service;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.LikeGraph;
+import ru.yandex.practicum.filmorate.storage.RecommendationCache;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
 public class RecommendationsService {
+    private static final long REFRESH_INTERVAL_SECONDS = 60;
+    private static final int REFRESH_BATCH_SIZE = 500;
+    private static final int MAX_RECOMMENDATIONS = 1000;
+
     private final FilmService filmService;
     private final UserService userService;
+    private final LikeGraph likeGraph;
+    private final RecommendationCache recommendationCache;
+    private final ScheduledExecutorService refreshExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "recommendations-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     @Autowired
-    public RecommendationsService(FilmService filmService, UserService userService) {
+    public RecommendationsService(FilmService filmService, UserService userService, LikeGraph likeGraph,
+                                  RecommendationCache recommendationCache) {
         this.filmService = filmService;
         this.userService = userService;
+        this.likeGraph = likeGraph;
+        this.recommendationCache = recommendationCache;
+    }
+
+    @PostConstruct
+    public void startRefresh() {
+        refreshExecutor.scheduleWithFixedDelay(this::refreshActiveUsers, REFRESH_INTERVAL_SECONDS,
+                REFRESH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stopRefresh() {
+        refreshExecutor.shutdownNow();
     }
 
-    public List<Film> getRecommendationsFilms(Long userId) {
-        User user = userService.getUserById(userId);
-        if (user == null) {
-            throw new UserNotFoundException("Пользователь с ID " + userId + " не найден");
+    public List<Film> getRecommendationsFilms(Long userId, int limit) {
+        if (limit <= 0) {
+            throw new ValidationException("Количество рекомендаций должно быть положительным числом");
+        }
+        List<Long> recommendedFilms = recommendationCache.get(userId);
+        if (recommendedFilms == null) {
+            User user = userService.getUserById(userId);
+            if (user == null) {
+                throw new UserNotFoundException("Пользователь с ID " + userId + " не найден");
+            }
+            LikeGraph.Recommendation recommendation = computeRecommendation(userId);
+            recommendationCache.put(userId, recommendation.filmIds(), recommendation.similarUserIds());
+            recommendedFilms = recommendation.filmIds();
         }
 
-        List<Long> friendsOfInterestIds = filmService.getFriendsOfInterest(userId);
-        if (friendsOfInterestIds.isEmpty()) {
+        log.debug("Получаем список рекомендованных фильмов для пользователя {}", userId);
+        if (recommendedFilms.isEmpty()) {
             return new ArrayList<>();
         }
+        return filmService.getFilmsByIds(recommendedFilms.subList(0, Math.min(limit, recommendedFilms.size())));
+    }
 
-        List<Long> recommendedFilms = filmService.getRecommendedFilms(userId, friendsOfInterestIds);
+    /**
+     * Заранее пересчитывает рекомендации пользователей, которые недавно их запрашивали.
+     */
+    public void refreshActiveUsers() {
+        try {
+            List<Long> userIds = recommendationCache.getUsersToRefresh(REFRESH_BATCH_SIZE);
+            for (Long userId : userIds) {
+                LikeGraph.Recommendation recommendation = computeRecommendation(userId);
+                recommendationCache.refresh(userId, recommendation.filmIds(), recommendation.similarUserIds());
+            }
+            if (!userIds.isEmpty()) {
+                log.debug("Пересчитаны рекомендации для {} пользователей", userIds.size());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Ошибка фонового пересчета рекомендаций: {}", e.getMessage());
+        }
+    }
 
-        List<Film> films = filmService.getFilmsByIds(recommendedFilms);
+    private LikeGraph.Recommendation computeRecommendation(Long userId) {
+        if (likeGraph.isReady()) {
+            return likeGraph.getRecommendation(userId, MAX_RECOMMENDATIONS);
+        }
 
-        log.debug("Получаем список рекомендованных фильмов для пользователя {}", userId);
-        return films;
+        List<Long> friendsOfInterestIds = filmService.getFriendsOfInterest(userId);
+        if (friendsOfInterestIds.isEmpty()) {
+            return new LikeGraph.Recommendation(new ArrayList<>(), friendsOfInterestIds);
+        }
+        List<Long> recommendedFilms = filmService.getRecommendedFilms(userId, friendsOfInterestIds,
+                MAX_RECOMMENDATIONS);
+        return new LikeGraph.Recommendation(recommendedFilms, friendsOfInterestIds);
     }
-
 }
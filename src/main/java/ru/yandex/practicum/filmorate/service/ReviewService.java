@@ -2,6 +2,8 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.ResourceNotFoundException;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
@@ -9,10 +11,15 @@ import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Review;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.ReviewRanking;
 import ru.yandex.practicum.filmorate.storage.ReviewStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 @Service
 @Slf4j
@@ -20,12 +27,17 @@ public class ReviewService {
     private final ReviewStorage reviewStorage;
     private final UserStorage userStorage;
     private final FilmStorage filmStorage;
+    private final ReviewRanking reviewRanking;
+    private final Cache reviewCache;
 
     public ReviewService(ReviewStorage reviewStorage, UserStorage userStorage,
-                         @Qualifier("filmDbStorage") FilmStorage filmStorage) {
+                         @Qualifier("filmDbStorage") FilmStorage filmStorage, ReviewRanking reviewRanking,
+                         CacheManager cacheManager) {
         this.reviewStorage = reviewStorage;
         this.userStorage = userStorage;
         this.filmStorage = filmStorage;
+        this.reviewRanking = reviewRanking;
+        this.reviewCache = Objects.requireNonNull(cacheManager.getCache("reviews"), "Кеш reviews не настроен");
     }
 
     public Review addReviews(Review reviews) {
@@ -49,7 +61,9 @@ public class ReviewService {
 
         log.info("Добавление отзыва");
         try {
-            return reviewStorage.addReviews(reviews);
+            Review review = reviewStorage.addReviews(reviews);
+            reviewRanking.addReview(review);
+            return review;
         } catch (Exception e) {
             log.error("Неизвестная ошибка при добавлении отзыва: ", e);
             throw new RuntimeException("Неизвестная ошибка при добавлении отзыва", e);
@@ -71,6 +85,7 @@ public class ReviewService {
         try {
             log.info("Попытка удалить отзыв");
             reviewStorage.deleteReviews(id);
+            reviewRanking.removeReview(id);
             log.info("Отзыв удален");
         } catch (Exception e) {
             log.info("Ошибка удаления");
@@ -91,13 +106,41 @@ public class ReviewService {
     public List<Review> getReviewsByFilm(Long id, int count) {
         try {
             log.info("Пытаемся получить отзывы фильма");
-            return reviewStorage.getReviewsByFilm(id, count);
+            List<Long> reviewIds = reviewRanking.getTopReviewIds(id, count, () -> reviewStorage.getUsefulByFilm(id));
+            return getReviewsInOrder(reviewIds);
         } catch (Exception e) {
             log.info("Ошибка получения отзывов фильма по Причине {}", e.getMessage());
             throw new RuntimeException("Ошибка получения отзывов фильма");
         }
     }
 
+    /**
+     * Берет отзывы из кеша, а недостающие загружает одним запросом и кладет в кеш.
+     * Отзывы, удаленные после построения порядка, пропускаются.
+     */
+    private List<Review> getReviewsInOrder(List<Long> ids) {
+        Map<Long, Review> reviews = new HashMap<>();
+        List<Long> misses = new ArrayList<>();
+        for (Long reviewId : ids) {
+            Review cached = reviewCache.get(reviewId, Review.class);
+            if (cached == null) {
+                misses.add(reviewId);
+            } else {
+                reviews.put(reviewId, cached);
+            }
+        }
+        if (!misses.isEmpty()) {
+            for (Review review : reviewStorage.getReviewsByIds(misses)) {
+                reviewCache.putIfAbsent(review.getReviewId(), review);
+                reviews.put(review.getReviewId(), review);
+            }
+        }
+        return ids.stream()
+                .map(reviews::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
     public List<Review> getAllReviews(int count) {
         try {
             log.info("Пытаемся получить все отзывы");
@@ -115,6 +158,7 @@ public class ReviewService {
             checkUserExists(userId);
 
             reviewStorage.likeToReview(reviewId, userId);
+            reviewRanking.updateReview(reviewId, reviewStorage::getUseful);
             log.info("Добавили лайк отзыву");
         } catch (Exception e) {
             log.info("Ошибка добавления лайка отзыву. Причина {}", e.getMessage());
@@ -129,6 +173,7 @@ public class ReviewService {
             checkUserExists(userId);
 
             reviewStorage.dislikeToReview(reviewId, userId);
+            reviewRanking.updateReview(reviewId, reviewStorage::getUseful);
             log.info("Добавили дислайк отзыву");
         } catch (Exception e) {
             log.info("Ошибка добавления дислайка отзыву. Причина {}", e.getMessage());
@@ -143,6 +188,7 @@ public class ReviewService {
             checkUserExists(userId);
 
             reviewStorage.deleteLike(reviewId, userId);
+            reviewRanking.updateReview(reviewId, reviewStorage::getUseful);
             log.info("Удаление лайка отзыву");
         } catch (Exception e) {
             log.info("Ошибка удаления лайка отзыву. Причина {}", e.getMessage());
@@ -157,6 +203,7 @@ public class ReviewService {
             checkUserExists(userId);
 
             reviewStorage.deleteDislike(reviewId, userId);
+            reviewRanking.updateReview(reviewId, reviewStorage::getUseful);
             log.info("Удаление дислайка отзыву");
         } catch (Exception e) {
             log.info("Ошибка удаления дислайка отзыву. Причина {}", e.getMessage());
@@ -2,33 +2,67 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.web.bind.annotation.PutMapping;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Feed;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.FeedStorage;
+import ru.yandex.practicum.filmorate.storage.FriendshipGraph;
 import ru.yandex.practicum.filmorate.storage.FriendshipStorage;
+import ru.yandex.practicum.filmorate.storage.LikeGraph;
+import ru.yandex.practicum.filmorate.storage.LikeStorage;
+import ru.yandex.practicum.filmorate.storage.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.RecentFeedCache;
+import ru.yandex.practicum.filmorate.storage.RecommendationCache;
+import ru.yandex.practicum.filmorate.storage.ReviewRanking;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
 public class UserService {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final UserStorage userStorage;
     private final FriendshipStorage friendshipStorage;
+    private final FriendshipGraph friendshipGraph;
     private final FeedStorage feedStorage;
+    private final LikeStorage likeStorage;
+    private final PopularityLeaderboard popularityLeaderboard;
+    private final LikeGraph likeGraph;
+    private final RecommendationCache recommendationCache;
+    private final RecentFeedCache recentFeedCache;
+    private final ReviewRanking reviewRanking;
 
     public UserService(@Qualifier("userDbStorage") UserStorage userStorage,
                        @Qualifier("friendDbStorage") FriendshipStorage friendshipStorage,
-                       @Qualifier("feedDbStorage") FeedStorage feedStorage) {
+                       FriendshipGraph friendshipGraph,
+                       @Qualifier("feedDbStorage") FeedStorage feedStorage,
+                       @Qualifier("likeDbStorage") LikeStorage likeStorage,
+                       PopularityLeaderboard popularityLeaderboard,
+                       LikeGraph likeGraph,
+                       RecommendationCache recommendationCache,
+                       RecentFeedCache recentFeedCache,
+                       ReviewRanking reviewRanking) {
         this.userStorage = userStorage;
         this.friendshipStorage = friendshipStorage;
+        this.friendshipGraph = friendshipGraph;
         this.feedStorage = feedStorage;
-
+        this.likeStorage = likeStorage;
+        this.popularityLeaderboard = popularityLeaderboard;
+        this.likeGraph = likeGraph;
+        this.recommendationCache = recommendationCache;
+        this.recentFeedCache = recentFeedCache;
+        this.reviewRanking = reviewRanking;
     }
 
     public Collection<User> getUsers() {
@@ -36,6 +70,20 @@ public class UserService {
         return userStorage.getUsers();
     }
 
+    public List<User> getUsersPage(Long after, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (pageSize <= 0) {
+            throw new ValidationException("Размер страницы должен быть положительным числом");
+        }
+        log.info("Получение страницы пользователей после id {} размером {}", after, pageSize);
+        return userStorage.getUsersPage(after == null ? 0 : after, Math.min(pageSize, MAX_PAGE_SIZE));
+    }
+
+    public void streamUsers(Consumer<User> consumer) {
+        log.info("Потоковая выгрузка всех пользователей");
+        userStorage.streamUsers(consumer);
+    }
+
     public User getUserById(Long id) {
         log.info("Получение пользователя {}", id);
         return userStorage.getUserById(id);
@@ -59,22 +107,38 @@ public class UserService {
         return oldUser;
     }
 
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadFriendshipGraph() {
+        log.info("Загрузка графа дружбы");
+        friendshipGraph.load(friendshipStorage::getFriendIdsByUser);
+    }
+
     public void addFriend(Long id, Long friendId) {
-        friendshipStorage.addFriend(id, friendId);
-        log.debug("Пользователи {} и {} теперь друзья.", id, friendId);
+        userStorage.getUserById(id);
+        userStorage.getUserById(friendId);
+        if (friendshipGraph.addFriend(id, friendId, () -> friendshipStorage.addFriend(id, friendId))) {
+            log.debug("Пользователи {} и {} теперь друзья.", id, friendId);
+        }
     }
 
     public void deleteFriend(Long id, Long friendId) {
-        friendshipStorage.deleteFriend(id, friendId);
+        friendshipGraph.removeFriend(id, friendId, () -> friendshipStorage.deleteFriend(id, friendId));
         log.debug("Пользователи {} и {} удалены из друзей.", id, friendId);
     }
 
     public List<User> getFriends(Long id) {
-        return friendshipStorage.getFriends(id);
+        if (!friendshipGraph.isReady()) {
+            return friendshipStorage.getFriends(id);
+        }
+        userStorage.getUserById(id);
+        return userStorage.getUsersByIds(friendshipGraph.getFriendIds(id));
     }
 
     public List<User> getCommonFriends(Long id, Long friendId) {
-        return friendshipStorage.getCommonFriends(id, friendId);
+        if (!friendshipGraph.isReady()) {
+            return friendshipStorage.getCommonFriends(id, friendId);
+        }
+        return userStorage.getUsersByIds(friendshipGraph.getCommonFriendIds(id, friendId));
     }
 
 
@@ -86,9 +150,31 @@ public class UserService {
         }
     }
 
+    public List<Feed> getFeedPage(Long id, Long before, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (pageSize <= 0) {
+            throw new ValidationException("Размер страницы должен быть положительным числом");
+        }
+        log.info("Получение событий пользователя {} до события {} размером {}", id, before, pageSize);
+        try {
+            return feedStorage.getFeedPage(id, before, Math.min(pageSize, MAX_PAGE_SIZE));
+        } catch (NotFoundException e) {
+            throw new UserNotFoundException("Пользователь с ID " + id + " не найден");
+        }
+    }
+
     public void deleteUser(Long id) {
         try {
-            userStorage.deleteUser(id);
+            List<Long> likedFilmIds = likeGraph.removeUser(id, () -> {
+                List<Long> filmIds = likeStorage.getLikedFilmIds(id);
+                userStorage.deleteUser(id);
+                return filmIds;
+            });
+            likedFilmIds.forEach(filmId -> popularityLeaderboard.changeLikes(filmId, -1));
+            friendshipGraph.removeUser(id);
+            recommendationCache.removeUser(id);
+            recentFeedCache.removeUser(id);
+            reviewRanking.clear();
         } catch (Exception e) {
             log.info("Ошибка удаления пользователя {}", e.getMessage());
             throw new UserNotFoundException("Пользователь с ID" + id + " не найден");
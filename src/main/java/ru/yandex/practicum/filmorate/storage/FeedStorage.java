@@ -1,10 +1,16 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.enums.EventType;
+import ru.yandex.practicum.filmorate.model.enums.Operation;
 
 import java.util.List;
 
 public interface FeedStorage {
 
     List<Feed> getFeed(Long id);
+
+    List<Feed> getFeedPage(Long id, Long before, int limit);
+
+    void addEvent(long userId, EventType eventType, Operation operation, long entityId);
 }
@@ -0,0 +1,212 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * Инвертированный индекс по названиям фильмов и именам режиссеров.
+ * Слова приводятся к нижнему регистру, слово запроса совпадает с любым словом, которое с него начинается.
+ */
+@Slf4j
+@Component
+public class FilmSearchIndex {
+    private static final int EXACT_MATCH_SCORE = 2;
+    private static final int PREFIX_MATCH_SCORE = 1;
+
+    private final NavigableMap<String, Set<Long>> filmsByTitleToken = new TreeMap<>();
+    private final NavigableMap<String, Set<Long>> directorsByNameToken = new TreeMap<>();
+    private final Map<Long, Set<String>> titleTokensByFilm = new HashMap<>();
+    private final Map<Long, Set<String>> nameTokensByDirector = new HashMap<>();
+    private final Map<Long, Set<Long>> filmsByDirector = new HashMap<>();
+    private final Map<Long, Set<Long>> directorsByFilm = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void load(Collection<Film> films, Collection<Director> directors) {
+        lock.writeLock().lock();
+        try {
+            filmsByTitleToken.clear();
+            directorsByNameToken.clear();
+            titleTokensByFilm.clear();
+            nameTokensByDirector.clear();
+            filmsByDirector.clear();
+            directorsByFilm.clear();
+            directors.forEach(this::indexDirector);
+            films.forEach(this::indexFilm);
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Поисковый индекс загружен: {} фильмов, {} режиссеров", films.size(), directors.size());
+    }
+
+    public void putFilm(Film film) {
+        lock.writeLock().lock();
+        try {
+            unindexFilm(film.getId());
+            indexFilm(film);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(long filmId) {
+        lock.writeLock().lock();
+        try {
+            unindexFilm(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void putDirector(Director director) {
+        lock.writeLock().lock();
+        try {
+            unindexDirector(director.getId());
+            indexDirector(director);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeDirector(long directorId) {
+        lock.writeLock().lock();
+        try {
+            unindexDirector(directorId);
+            Set<Long> filmIds = filmsByDirector.remove(directorId);
+            if (filmIds != null) {
+                filmIds.forEach(filmId -> directorsByFilm.get(filmId).remove(directorId));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ищет фильмы, у которых каждое слово запроса совпадает с началом слова в названии или в имени режиссера.
+     *
+     * @return id фильмов по убыванию релевантности, затем по убыванию количества лайков
+     */
+    public List<Long> search(String query, boolean byTitle, boolean byDirector, ToIntFunction<Long> likes) {
+        List<String> queryTokens = tokenize(query);
+        if (queryTokens.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<Long, Integer> scores = null;
+        lock.readLock().lock();
+        try {
+            for (String queryToken : queryTokens) {
+                Map<Long, Integer> tokenScores = new HashMap<>();
+                if (byTitle) {
+                    matchTokens(filmsByTitleToken, queryToken,
+                            (filmId, score) -> tokenScores.merge(filmId, score, Math::max));
+                }
+                if (byDirector) {
+                    matchTokens(directorsByNameToken, queryToken, (directorId, score) ->
+                            filmsByDirector.getOrDefault(directorId, Collections.emptySet())
+                                    .forEach(filmId -> tokenScores.merge(filmId, score, Math::max)));
+                }
+                if (scores == null) {
+                    scores = tokenScores;
+                } else {
+                    scores.keySet().retainAll(tokenScores.keySet());
+                    scores.replaceAll((filmId, score) -> score + tokenScores.get(filmId));
+                }
+                if (scores.isEmpty()) {
+                    return new ArrayList<>();
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Map<Long, Integer> likesByFilm = new HashMap<>();
+        scores.keySet().forEach(filmId -> likesByFilm.put(filmId, likes.applyAsInt(filmId)));
+        Map<Long, Integer> relevance = scores;
+        return relevance.keySet().stream()
+                .sorted(Comparator.<Long>comparingInt(relevance::get).reversed()
+                        .thenComparing(Comparator.<Long>comparingInt(likesByFilm::get).reversed())
+                        .thenComparing(Comparator.naturalOrder()))
+                .toList();
+    }
+
+    private void matchTokens(NavigableMap<String, Set<Long>> postings, String queryToken,
+                             MatchConsumer consumer) {
+        postings.subMap(queryToken, true, queryToken + Character.MAX_VALUE, false).forEach((token, ids) -> {
+            int score = token.equals(queryToken) ? EXACT_MATCH_SCORE : PREFIX_MATCH_SCORE;
+            ids.forEach(id -> consumer.accept(id, score));
+        });
+    }
+
+    private void indexFilm(Film film) {
+        Set<String> tokens = new HashSet<>(tokenize(film.getName()));
+        titleTokensByFilm.put(film.getId(), tokens);
+        tokens.forEach(token -> filmsByTitleToken.computeIfAbsent(token, k -> new HashSet<>()).add(film.getId()));
+
+        Set<Long> directorIds = new HashSet<>();
+        for (Director director : film.getDirectors()) {
+            directorIds.add(director.getId());
+            filmsByDirector.computeIfAbsent(director.getId(), k -> new HashSet<>()).add(film.getId());
+        }
+        directorsByFilm.put(film.getId(), directorIds);
+    }
+
+    private void unindexFilm(long filmId) {
+        removePostings(filmsByTitleToken, titleTokensByFilm.remove(filmId), filmId);
+        Set<Long> directorIds = directorsByFilm.remove(filmId);
+        if (directorIds != null) {
+            directorIds.forEach(directorId -> filmsByDirector.get(directorId).remove(filmId));
+        }
+    }
+
+    private void indexDirector(Director director) {
+        Set<String> tokens = new HashSet<>(tokenize(director.getName()));
+        nameTokensByDirector.put(director.getId(), tokens);
+        tokens.forEach(token -> directorsByNameToken.computeIfAbsent(token, k -> new HashSet<>())
+                .add(director.getId()));
+    }
+
+    private void unindexDirector(long directorId) {
+        removePostings(directorsByNameToken, nameTokensByDirector.remove(directorId), directorId);
+    }
+
+    private static void removePostings(Map<String, Set<Long>> postings, Set<String> tokens, long id) {
+        if (tokens == null) {
+            return;
+        }
+        for (String token : tokens) {
+            Set<Long> ids = postings.get(token);
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                postings.remove(token);
+            }
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null) {
+            return new ArrayList<>();
+        }
+        return Arrays.stream(text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+                .filter(token -> !token.isEmpty())
+                .distinct()
+                .toList();
+    }
+
+    @FunctionalInterface
+    private interface MatchConsumer {
+        void accept(Long id, int score);
+    }
+}
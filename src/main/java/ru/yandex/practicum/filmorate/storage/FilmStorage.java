@@ -4,19 +4,29 @@ import ru.yandex.practicum.filmorate.model.Film;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
 
     Film getFilmById(Long id);
 
+    Set<Long> getExistingFilmIds(Collection<Long> ids);
+
     List<Film> getFilmsByIds(List<Long> ids);
 
     Collection<Film> getFilms();
 
+    List<Film> getFilmsPage(long afterId, int limit);
+
+    void streamFilms(Consumer<Film> consumer);
+
     List<Film> getFilmsByDirector(long directorId, String sortBy);
 
     Film addFilm(Film film);
 
+    List<Film> addFilms(List<Film> films);
+
     Film updateFilm(Film film);
 
     List<Film> getPopularFilms(int count, Integer genreId, Integer year);
@@ -25,10 +35,10 @@ public interface FilmStorage {
 
     void deleteFilm(Long id);
 
-    List<Film> searchFilmsTitleAndDirector(String queryStr);
+    List<Film> searchFilmsTitleAndDirector(String queryStr, int count, int offset);
 
-    List<Film> searchFilmsTitle(String queryStr);
+    List<Film> searchFilmsTitle(String queryStr, int count, int offset);
 
-    List<Film> searchFilmsDirector(String queryStr);
+    List<Film> searchFilmsDirector(String queryStr, int count, int offset);
 
 }
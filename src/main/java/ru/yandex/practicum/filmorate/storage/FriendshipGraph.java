@@ -0,0 +1,205 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Дружба в памяти: для каждого пользователя отсортированные массивы id друзей и тех, кто добавил его в друзья.
+ * Массивы не меняются после публикации, изменение заменяет массив целиком.
+ * Изменения выполняются вместе с записью в базу, по очереди для каждой пары пользователей,
+ * поэтому граф меняется в том же порядке, что и база.
+ */
+@Slf4j
+@Component
+public class FriendshipGraph {
+    private static final long[] EMPTY = new long[0];
+
+    private final Map<Long, long[]> friendsByUser = new HashMap<>();
+    private final Map<Long, long[]> followersByUser = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final GraphUpdateLock updateLock = new GraphUpdateLock();
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Загружает граф. Изменения дружбы ждут окончания загрузки, поэтому ни одно из них не теряется.
+     *
+     * @param loader id друзей по пользователям, читается из базы уже под блокировкой изменений
+     */
+    public void load(Supplier<Map<Long, List<Long>>> loader) {
+        updateLock.exclusive(() -> {
+            Map<Long, List<Long>> friendIdsByUser = loader.get();
+            Map<Long, List<Long>> followerIdsByUser = new HashMap<>();
+            friendIdsByUser.forEach((userId, friendIds) -> friendIds.forEach(friendId ->
+                    followerIdsByUser.computeIfAbsent(friendId, id -> new ArrayList<>()).add(userId)));
+            lock.writeLock().lock();
+            try {
+                friendsByUser.clear();
+                followersByUser.clear();
+                friendIdsByUser.forEach((userId, friendIds) -> friendsByUser.put(userId, toSortedArray(friendIds)));
+                followerIdsByUser.forEach((userId, ids) -> followersByUser.put(userId, toSortedArray(ids)));
+                ready = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("Граф дружбы загружен: {} пользователей с друзьями", friendIdsByUser.size());
+            return null;
+        });
+    }
+
+    public List<Long> getFriendIds(long userId) {
+        return toList(friends(userId));
+    }
+
+    public List<Long> getCommonFriendIds(long userId, long otherId) {
+        long[] first = friends(userId);
+        long[] second = friends(otherId);
+        List<Long> common = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                common.add(first[i]);
+                i++;
+                j++;
+            }
+        }
+        return common;
+    }
+
+    /**
+     * Добавляет дружбу, если пользователи ещё не связаны ни в одну сторону. Запись в базу выполняет {@code write},
+     * связь появляется в графе, только если она вернула {@code true}.
+     *
+     * @return была ли добавлена дружба
+     */
+    public boolean addFriend(long userId, long friendId, BooleanSupplier write) {
+        return updateLock.forPair(userId, friendId, () -> {
+            if (ready && isLinked(userId, friendId)) {
+                return false;
+            }
+            if (!write.getAsBoolean()) {
+                return false;
+            }
+            lock.writeLock().lock();
+            try {
+                friendsByUser.put(userId, insert(friendsByUser.getOrDefault(userId, EMPTY), friendId));
+                followersByUser.put(friendId, insert(followersByUser.getOrDefault(friendId, EMPTY), userId));
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return true;
+        });
+    }
+
+    public void removeFriend(long userId, long friendId, Runnable write) {
+        updateLock.forPair(userId, friendId, () -> {
+            write.run();
+            lock.writeLock().lock();
+            try {
+                unlink(userId, friendId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Убирает связи уже удаленного из базы пользователя, дождавшись начатых изменений дружбы.
+     */
+    public void removeUser(long userId) {
+        updateLock.exclusive(() -> {
+            lock.writeLock().lock();
+            try {
+                for (long friendId : friends(userId)) {
+                    unlink(userId, friendId);
+                }
+                for (long followerId : followersByUser.getOrDefault(userId, EMPTY)) {
+                    unlink(followerId, userId);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return null;
+        });
+    }
+
+    private boolean isLinked(long userId, long friendId) {
+        return Arrays.binarySearch(friends(userId), friendId) >= 0
+                || Arrays.binarySearch(friends(friendId), userId) >= 0;
+    }
+
+    private long[] friends(long userId) {
+        lock.readLock().lock();
+        try {
+            return friendsByUser.getOrDefault(userId, EMPTY);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void unlink(long userId, long friendId) {
+        long[] friends = remove(friendsByUser.getOrDefault(userId, EMPTY), friendId);
+        long[] followers = remove(followersByUser.getOrDefault(friendId, EMPTY), userId);
+        if (friends.length == 0) {
+            friendsByUser.remove(userId);
+        } else {
+            friendsByUser.put(userId, friends);
+        }
+        if (followers.length == 0) {
+            followersByUser.remove(friendId);
+        } else {
+            followersByUser.put(friendId, followers);
+        }
+    }
+
+    private static long[] insert(long[] ids, long id) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index >= 0) {
+            return ids;
+        }
+        int position = -index - 1;
+        long[] result = new long[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, position);
+        result[position] = id;
+        System.arraycopy(ids, position, result, position + 1, ids.length - position);
+        return result;
+    }
+
+    private static long[] remove(long[] ids, long id) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index < 0) {
+            return ids;
+        }
+        long[] result = new long[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, index);
+        System.arraycopy(ids, index + 1, result, index, ids.length - index - 1);
+        return result;
+    }
+
+    private static long[] toSortedArray(List<Long> ids) {
+        return ids.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+    }
+
+    private static List<Long> toList(long[] ids) {
+        List<Long> list = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
+}
@@ -3,14 +3,17 @@ package ru.yandex.practicum.filmorate.storage;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.List;
+import java.util.Map;
 
 public interface FriendshipStorage {
 
-    void addFriend(Long id, Long friendId);
+    boolean addFriend(Long id, Long friendId);
 
     void deleteFriend(Long id, Long friendId);
 
     List<User> getFriends(Long id);
 
     List<User> getCommonFriends(Long id, Long friendId);
+
+    Map<Long, List<Long>> getFriendIdsByUser();
 }
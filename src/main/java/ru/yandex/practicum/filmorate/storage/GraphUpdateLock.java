@@ -0,0 +1,61 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Упорядочивает изменения графа в памяти с записью в базу.
+ * Изменения одной пары id выполняются по очереди, разных пар (кроме совпавших полос) — параллельно.
+ * Загрузка графа и удаление пользователя или фильма целиком исключают все остальные изменения.
+ */
+final class GraphUpdateLock {
+    private static final int STRIPE_BITS = 6;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+    private final ReadWriteLock exclusiveLock = new ReentrantReadWriteLock();
+    private final Lock[] stripes = new Lock[STRIPES];
+
+    GraphUpdateLock() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Выполняет изменение пары id. Порядок id не важен: пары (a, b) и (b, a) попадают в одну полосу.
+     */
+    <T> T forPair(long first, long second, Supplier<T> update) {
+        Lock stripe = stripes[stripe(Math.min(first, second), Math.max(first, second))];
+        exclusiveLock.readLock().lock();
+        try {
+            stripe.lock();
+            try {
+                return update.get();
+            } finally {
+                stripe.unlock();
+            }
+        } finally {
+            exclusiveLock.readLock().unlock();
+        }
+    }
+
+    <T> T exclusive(Supplier<T> update) {
+        exclusiveLock.writeLock().lock();
+        try {
+            return update.get();
+        } finally {
+            exclusiveLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Фибоначчиево хеширование: соседние пары id расходятся по разным полосам.
+     */
+    private static int stripe(long low, long high) {
+        return (int) (((low * GOLDEN_RATIO + high) * GOLDEN_RATIO) >>> (Long.SIZE - STRIPE_BITS));
+    }
+}
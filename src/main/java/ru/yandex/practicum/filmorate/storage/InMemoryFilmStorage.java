@@ -6,9 +6,12 @@ import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.ResourceNotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Component
@@ -24,17 +27,72 @@ public class InMemoryFilmStorage implements FilmStorage, LikeStorage {
     }
 
     @Override
-    public void addLike(Film film, User user) {
+    public List<Film> getFilmsPage(long afterId, int limit) {
+        return films.values().stream()
+                .filter(film -> film.getId() > afterId)
+                .sorted(Comparator.comparing(Film::getId))
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public void streamFilms(Consumer<Film> consumer) {
+        films.values().forEach(consumer);
+    }
+
+    @Override
+    public boolean addLike(Film film, User user) {
         final Set<Long> idLikes = likes.computeIfAbsent(film.getId(), id -> new HashSet<>());
-        idLikes.add(user.getId());
+        boolean added = idLikes.add(user.getId());
         log.info("Пользователь с ID {} поставил лайк фильму с ID {}", user.getId(), film.getId());
+        return added;
+    }
+
+    @Override
+    public List<Like> addLikes(List<Like> newLikes) {
+        return newLikes.stream()
+                .filter(like -> likes.computeIfAbsent(like.getFilmId(), id -> new HashSet<>()).add(like.getUserId()))
+                .toList();
+    }
+
+    @Override
+    public Set<Long> getExistingFilmIds(Collection<Long> ids) {
+        return ids.stream().filter(films::containsKey).collect(Collectors.toSet());
     }
 
     @Override
-    public void deleteLike(Film film, User user) {
+    public boolean deleteLike(Film film, User user) {
         final Set<Long> filmLikes = likes.computeIfAbsent(film.getId(), id -> new HashSet<>());
-        filmLikes.remove(user.getId());
+        boolean removed = filmLikes.remove(user.getId());
         log.info("Пользователь с ID {} удалил лайк у фильма с ID {}", user.getId(), user.getId());
+        return removed;
+    }
+
+    @Override
+    public Map<Long, Integer> getLikeCounts() {
+        Map<Long, Integer> counts = new HashMap<>();
+        likes.forEach((filmId, userIds) -> {
+            if (!userIds.isEmpty()) {
+                counts.put(filmId, userIds.size());
+            }
+        });
+        return counts;
+    }
+
+    @Override
+    public List<Long> getLikedFilmIds(Long userId) {
+        return likes.entrySet().stream()
+                .filter(entry -> entry.getValue().contains(userId))
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    @Override
+    public Map<Long, List<Long>> getLikedFilmIdsByUser() {
+        Map<Long, List<Long>> likedFilms = new HashMap<>();
+        likes.forEach((filmId, userIds) -> userIds.forEach(userId ->
+                likedFilms.computeIfAbsent(userId, k -> new ArrayList<>()).add(filmId)));
+        return likedFilms;
     }
 
     @Override
@@ -43,7 +101,7 @@ public class InMemoryFilmStorage implements FilmStorage, LikeStorage {
     }
 
     @Override
-    public List<Long> getRecommendedFilmsDB(Long userId, List<Long> friendsOfInterestIds) {
+    public List<Long> getRecommendedFilmsDB(Long userId, List<Long> friendsOfInterestIds, int limit) {
         return null;
     }
 
@@ -84,6 +142,12 @@ public class InMemoryFilmStorage implements FilmStorage, LikeStorage {
         return film;
     }
 
+    @Override
+    public List<Film> addFilms(List<Film> films) {
+        films.forEach(this::addFilm);
+        return films;
+    }
+
     @Override
     public Film updateFilm(Film newFilm) {
 
@@ -103,17 +167,17 @@ public class InMemoryFilmStorage implements FilmStorage, LikeStorage {
     }
 
     @Override
-    public List<Film> searchFilmsTitleAndDirector(String queryStr) {
+    public List<Film> searchFilmsTitleAndDirector(String queryStr, int count, int offset) {
         return null;
     }
 
     @Override
-    public List<Film> searchFilmsTitle(String queryStr) {
+    public List<Film> searchFilmsTitle(String queryStr, int count, int offset) {
         return null;
     }
 
     @Override
-    public List<Film> searchFilmsDirector(String queryStr) {
+    public List<Film> searchFilmsDirector(String queryStr, int count, int offset) {
         return null;
     }
 
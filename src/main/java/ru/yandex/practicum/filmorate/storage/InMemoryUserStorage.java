@@ -9,6 +9,7 @@ import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -24,6 +25,20 @@ public class InMemoryUserStorage implements UserStorage, FriendshipStorage {
         return users.values();
     }
 
+    @Override
+    public List<User> getUsersPage(long afterId, int limit) {
+        return users.values().stream()
+                .filter(user -> user.getId() > afterId)
+                .sorted(Comparator.comparing(User::getId))
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public void streamUsers(Consumer<User> consumer) {
+        users.values().forEach(consumer);
+    }
+
     @Override
     public User getUserById(Long id) {
         if (id == null) {
@@ -37,6 +52,16 @@ public class InMemoryUserStorage implements UserStorage, FriendshipStorage {
                 });
     }
 
+    @Override
+    public Set<Long> getExistingUserIds(Collection<Long> ids) {
+        return ids.stream().filter(users::containsKey).collect(Collectors.toSet());
+    }
+
+    @Override
+    public List<User> getUsersByIds(Collection<Long> ids) {
+        return ids.stream().distinct().sorted().map(users::get).filter(Objects::nonNull).toList();
+    }
+
     @Override
     public User addUser(User user) {
         nameValid(user);
@@ -46,6 +71,12 @@ public class InMemoryUserStorage implements UserStorage, FriendshipStorage {
         return user;
     }
 
+    @Override
+    public List<User> addUsers(List<User> users) {
+        users.forEach(this::addUser);
+        return users;
+    }
+
     @Override
     public User updateUser(User newUser) {
         nameValid(newUser);
@@ -90,7 +121,7 @@ public class InMemoryUserStorage implements UserStorage, FriendshipStorage {
     }
 
     @Override
-    public void addFriend(Long id, Long friendId) {
+    public boolean addFriend(Long id, Long friendId) {
         if (id == null || friendId == null) {
             throw new IllegalArgumentException("ID пользователя или друга не может быть null.");
         }
@@ -109,6 +140,7 @@ public class InMemoryUserStorage implements UserStorage, FriendshipStorage {
 
         user.getFriends().add(friendId);
         friendsUser.getFriends().add(id);
+        return true;
     }
 
     @Override
@@ -128,6 +160,15 @@ public class InMemoryUserStorage implements UserStorage, FriendshipStorage {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public Map<Long, List<Long>> getFriendIdsByUser() {
+        Map<Long, List<Long>> friendIdsByUser = new HashMap<>();
+        users.values().stream()
+                .filter(user -> !user.getFriends().isEmpty())
+                .forEach(user -> friendIdsByUser.put(user.getId(), new ArrayList<>(user.getFriends())));
+        return friendIdsByUser;
+    }
+
     @Override
     public List<User> getCommonFriends(Long id, Long friendId) {
         Set<Long> user = getUserById(id).getFriends();
@@ -0,0 +1,368 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Like;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Лайки в памяти в обе стороны: пользователь -> фильмы и фильм -> пользователи.
+ * Множества хранятся в отсортированных массивах id, поэтому память зависит только от числа лайков,
+ * а пересечения считаются слиянием без обращения к базе. Изменение заменяет массив целиком.
+ * Изменения выполняются вместе с записью в базу, поэтому граф меняется в том же порядке, что и база.
+ */
+@Slf4j
+@Component
+public class LikeGraph {
+    private static final int SIMILAR_USERS_LIMIT = 10;
+    private static final long[] EMPTY = new long[0];
+
+    private final Map<Long, long[]> filmsByUser = new HashMap<>();
+    private final Map<Long, long[]> usersByFilm = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final GraphUpdateLock updateLock = new GraphUpdateLock();
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Загружает граф. Изменения лайков ждут окончания загрузки, поэтому ни одно из них не теряется.
+     *
+     * @param loader id лайкнутых фильмов по пользователям, читается из базы уже под блокировкой изменений
+     */
+    public void load(Supplier<Map<Long, List<Long>>> loader) {
+        updateLock.exclusive(() -> {
+            Map<Long, List<Long>> likedFilmsByUser = loader.get();
+            Map<Long, List<Long>> likedUsersByFilm = new HashMap<>();
+            likedFilmsByUser.forEach((userId, filmIds) -> filmIds.forEach(filmId ->
+                    likedUsersByFilm.computeIfAbsent(filmId, id -> new ArrayList<>()).add(userId)));
+            lock.writeLock().lock();
+            try {
+                filmsByUser.clear();
+                usersByFilm.clear();
+                likedFilmsByUser.forEach((userId, filmIds) -> {
+                    if (!filmIds.isEmpty()) {
+                        filmsByUser.put(userId, toSortedArray(filmIds));
+                    }
+                });
+                likedUsersByFilm.forEach((filmId, userIds) -> usersByFilm.put(filmId, toSortedArray(userIds)));
+                ready = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("Граф лайков загружен: {} пользователей, {} фильмов", filmsByUser.size(), usersByFilm.size());
+            return null;
+        });
+    }
+
+    public List<Long> getLikedFilmIds(long userId) {
+        lock.readLock().lock();
+        try {
+            return toList(filmsByUser.getOrDefault(userId, EMPTY));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет лайк. Запись в базу выполняет {@code write}, лайк появляется в графе, только если она вернула
+     * {@code true}. Изменения одного лайка идут по очереди, поэтому граф меняется в том же порядке, что и база.
+     *
+     * @return был ли добавлен лайк
+     */
+    public boolean addLike(long userId, long filmId, BooleanSupplier write) {
+        return updateLock.forPair(userId, filmId, () -> {
+            if (!write.getAsBoolean()) {
+                return false;
+            }
+            lock.writeLock().lock();
+            try {
+                filmsByUser.put(userId, insert(filmsByUser.getOrDefault(userId, EMPTY), filmId));
+                usersByFilm.put(filmId, insert(usersByFilm.getOrDefault(filmId, EMPTY), userId));
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Добавляет пакет лайков, которые записывает в базу {@code write}. На время пакета остальные изменения
+     * лайков ждут. Лайки группируются по пользователям и фильмам, поэтому каждый массив пересобирается
+     * один раз на пакет.
+     *
+     * @return добавленные лайки
+     */
+    public List<Like> addLikes(Supplier<List<Like>> write) {
+        return updateLock.exclusive(() -> {
+            List<Like> likes = write.get();
+            Map<Long, List<Long>> filmIdsByUser = new HashMap<>();
+            Map<Long, List<Long>> userIdsByFilm = new HashMap<>();
+            for (Like like : likes) {
+                filmIdsByUser.computeIfAbsent(like.getUserId(), id -> new ArrayList<>()).add(like.getFilmId());
+                userIdsByFilm.computeIfAbsent(like.getFilmId(), id -> new ArrayList<>()).add(like.getUserId());
+            }
+            lock.writeLock().lock();
+            try {
+                filmIdsByUser.forEach((userId, filmIds) -> filmsByUser.put(userId,
+                        union(filmsByUser.getOrDefault(userId, EMPTY), toSortedArray(filmIds))));
+                userIdsByFilm.forEach((filmId, userIds) -> usersByFilm.put(filmId,
+                        union(usersByFilm.getOrDefault(filmId, EMPTY), toSortedArray(userIds))));
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return likes;
+        });
+    }
+
+    /**
+     * Удаляет лайк из графа, если его удалила из базы {@code write}.
+     *
+     * @return был ли удален лайк
+     */
+    public boolean removeLike(long userId, long filmId, BooleanSupplier write) {
+        return updateLock.forPair(userId, filmId, () -> {
+            if (!write.getAsBoolean()) {
+                return false;
+            }
+            lock.writeLock().lock();
+            try {
+                unlink(filmsByUser, userId, filmId);
+                unlink(usersByFilm, filmId, userId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Удаляет пользователя из базы через {@code write} и затем его лайки из графа.
+     * Пока идет удаление, остальные изменения лайков ждут.
+     *
+     * @return результат {@code write}
+     */
+    public <T> T removeUser(long userId, Supplier<T> write) {
+        return updateLock.exclusive(() -> {
+            T result = write.get();
+            lock.writeLock().lock();
+            try {
+                long[] films = filmsByUser.remove(userId);
+                if (films != null) {
+                    for (long filmId : films) {
+                        unlink(usersByFilm, filmId, userId);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return result;
+        });
+    }
+
+    public void removeFilm(long filmId, Runnable write) {
+        updateLock.exclusive(() -> {
+            write.run();
+            lock.writeLock().lock();
+            try {
+                long[] users = usersByFilm.remove(filmId);
+                if (users != null) {
+                    for (long userId : users) {
+                        unlink(filmsByUser, userId, filmId);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Находит до десяти пользователей с наибольшим числом общих лайков.
+     *
+     * @return id похожих пользователей и число общих лайков, по убыванию сходства
+     */
+    public LinkedHashMap<Long, Integer> getSimilarUsers(long userId) {
+        lock.readLock().lock();
+        try {
+            return findSimilarUsers(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Подбирает фильмы, которые лайкнули похожие пользователи, но не лайкнул сам пользователь.
+     * Вес фильма равен сумме сходства лайкнувших его похожих пользователей.
+     *
+     * @return не более {@code limit} id фильмов по убыванию веса, затем по возрастанию id
+     */
+    public Recommendation getRecommendation(long userId, int limit) {
+        lock.readLock().lock();
+        try {
+            long[] ownFilms = filmsByUser.get(userId);
+            if (ownFilms == null) {
+                return new Recommendation(new ArrayList<>(), new ArrayList<>());
+            }
+            LinkedHashMap<Long, Integer> similarUsers = findSimilarUsers(userId);
+            Map<Long, Integer> scores = new HashMap<>();
+            similarUsers.forEach((similarUserId, similarity) -> {
+                for (long filmId : difference(filmsByUser.get(similarUserId), ownFilms)) {
+                    scores.merge(filmId, similarity, Integer::sum);
+                }
+            });
+            List<Long> filmIds = scores.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.comparingByKey()))
+                    .limit(limit)
+                    .map(Map.Entry::getKey)
+                    .toList();
+            return new Recommendation(filmIds, new ArrayList<>(similarUsers.keySet()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Кандидаты берутся из пользователей, лайкнувших те же фильмы, сходство с каждым
+     * считается слиянием отсортированных списков фильмов.
+     */
+    private LinkedHashMap<Long, Integer> findSimilarUsers(long userId) {
+        long[] ownFilms = filmsByUser.get(userId);
+        if (ownFilms == null) {
+            return new LinkedHashMap<>();
+        }
+        Map<Long, Integer> overlaps = new HashMap<>();
+        for (long filmId : ownFilms) {
+            for (long otherId : usersByFilm.get(filmId)) {
+                if (otherId != userId && !overlaps.containsKey(otherId)) {
+                    overlaps.put(otherId, intersectionSize(ownFilms, filmsByUser.get(otherId)));
+                }
+            }
+        }
+
+        LinkedHashMap<Long, Integer> similarUsers = new LinkedHashMap<>();
+        overlaps.entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(SIMILAR_USERS_LIMIT)
+                .forEach(entry -> similarUsers.put(entry.getKey(), entry.getValue()));
+        return similarUsers;
+    }
+
+    private static void unlink(Map<Long, long[]> sets, long key, long value) {
+        long[] ids = sets.get(key);
+        if (ids == null) {
+            return;
+        }
+        long[] result = remove(ids, value);
+        if (result.length == 0) {
+            sets.remove(key);
+        } else {
+            sets.put(key, result);
+        }
+    }
+
+    private static int intersectionSize(long[] first, long[] second) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    private static long[] difference(long[] ids, long[] excluded) {
+        long[] result = new long[ids.length];
+        int size = 0;
+        int j = 0;
+        for (long id : ids) {
+            while (j < excluded.length && excluded[j] < id) {
+                j++;
+            }
+            if (j == excluded.length || excluded[j] != id) {
+                result[size++] = id;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static long[] union(long[] first, long[] second) {
+        long[] result = new long[first.length + second.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length || j < second.length) {
+            long id;
+            if (j == second.length || (i < first.length && first[i] < second[j])) {
+                id = first[i++];
+            } else if (i == first.length || second[j] < first[i]) {
+                id = second[j++];
+            } else {
+                id = first[i++];
+                j++;
+            }
+            result[size++] = id;
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    private static long[] insert(long[] ids, long id) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index >= 0) {
+            return ids;
+        }
+        int position = -index - 1;
+        long[] result = new long[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, position);
+        result[position] = id;
+        System.arraycopy(ids, position, result, position + 1, ids.length - position);
+        return result;
+    }
+
+    private static long[] remove(long[] ids, long id) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index < 0) {
+            return ids;
+        }
+        long[] result = new long[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, index);
+        System.arraycopy(ids, index + 1, result, index, ids.length - index - 1);
+        return result;
+    }
+
+    private static long[] toSortedArray(List<Long> ids) {
+        return ids.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+    }
+
+    private static List<Long> toList(long[] ids) {
+        List<Long> list = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
+
+    /**
+     * Рекомендованные фильмы вместе с пользователями, по лайкам которых они подобраны.
+     */
+    public record Recommendation(List<Long> filmIds, List<Long> similarUserIds) {
+    }
+}
@@ -1,17 +1,32 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.List;
+import java.util.Map;
 
 
 public interface LikeStorage {
-    void deleteLike(Film film, User user);
+    boolean deleteLike(Film film, User user);
 
-    void addLike(Film film, User user);
+    boolean addLike(Film film, User user);
+
+    /**
+     * Добавляет пакет лайков к существующим фильмам от существующих пользователей.
+     *
+     * @return лайки, которых раньше не было
+     */
+    List<Like> addLikes(List<Like> likes);
+
+    Map<Long, Integer> getLikeCounts();
+
+    List<Long> getLikedFilmIds(Long userId);
+
+    Map<Long, List<Long>> getLikedFilmIdsByUser();
 
     List<Long> getFriendsOfInterestDB(Long userId);
 
-    List<Long> getRecommendedFilmsDB(Long userId, List<Long> friendsOfInterestIds);
+    List<Long> getRecommendedFilmsDB(Long userId, List<Long> friendsOfInterestIds, int limit);
 }
@@ -9,4 +9,6 @@ public interface MpaStorage {
     List<Mpa> getAllMpa();
 
     Optional<Mpa> getMpaById(Integer id);
+
+    boolean mpaExists(int id);
 }
@@ -0,0 +1,202 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Рейтинг фильмов по количеству лайков, который держится в памяти.
+ * Помимо общего рейтинга ведутся отдельные рейтинги по жанрам и годам выпуска,
+ * поэтому топ-K по любому фильтру отдаётся без обращения к базе.
+ */
+@Slf4j
+@Component
+public class PopularityLeaderboard {
+    private static final Comparator<Entry> BY_LIKES = Comparator.comparingInt(Entry::likes).reversed()
+            .thenComparingLong(Entry::filmId);
+
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final NavigableSet<Entry> ranking = new TreeSet<>(BY_LIKES);
+    private final Map<Integer, NavigableSet<Entry>> rankingByGenre = new HashMap<>();
+    private final Map<Integer, NavigableSet<Entry>> rankingByYear = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void load(Collection<Film> films, Map<Long, Integer> likeCounts) {
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            ranking.clear();
+            rankingByGenre.clear();
+            rankingByYear.clear();
+            for (Film film : films) {
+                put(toEntry(film, likeCounts.getOrDefault(film.getId(), 0)));
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Рейтинг популярности загружен: {} фильмов", films.size());
+    }
+
+    public void addFilm(Film film) {
+        updateFilm(film);
+    }
+
+    public void updateFilm(Film film) {
+        lock.writeLock().lock();
+        try {
+            Entry old = remove(film.getId());
+            put(toEntry(film, old == null ? 0 : old.likes()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(long filmId) {
+        lock.writeLock().lock();
+        try {
+            remove(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void changeLikes(long filmId, int delta) {
+        lock.writeLock().lock();
+        try {
+            applyDelta(filmId, delta);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Меняет счётчики нескольких фильмов за одну блокировку.
+     *
+     * @param deltas изменение числа лайков по id фильма
+     */
+    public void changeLikes(Map<Long, Integer> deltas) {
+        lock.writeLock().lock();
+        try {
+            deltas.forEach(this::applyDelta);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void applyDelta(long filmId, int delta) {
+        Entry old = remove(filmId);
+        if (old == null) {
+            log.warn("Фильм с id {} отсутствует в рейтинге популярности", filmId);
+            return;
+        }
+        put(new Entry(filmId, Math.max(0, old.likes() + delta), old.year(), old.genreIds()));
+    }
+
+    public List<Long> getTop(int count, Integer genreId, Integer year) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<Entry> source = ranking;
+            if (genreId != null) {
+                source = rankingByGenre.getOrDefault(genreId, Collections.emptyNavigableSet());
+            }
+            if (year != null) {
+                NavigableSet<Entry> yearRanking = rankingByYear.getOrDefault(year, Collections.emptyNavigableSet());
+                if (genreId == null || yearRanking.size() < source.size()) {
+                    source = yearRanking;
+                }
+            }
+
+            List<Long> ids = new ArrayList<>(Math.min(count, source.size()));
+            for (Entry entry : source) {
+                if (ids.size() >= count) {
+                    break;
+                }
+                if ((genreId == null || entry.genreIds().contains(genreId)) && (year == null || entry.year() == year)) {
+                    ids.add(entry.filmId());
+                }
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getLikes(long filmId) {
+        lock.readLock().lock();
+        try {
+            Entry entry = entries.get(filmId);
+            return entry == null ? 0 : entry.likes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Сверяет счётчики рейтинга с количеством лайков из базы.
+     *
+     * @return id фильмов, у которых счётчики расходятся
+     */
+    public List<Long> verify(Map<Long, Integer> likeCounts) {
+        lock.readLock().lock();
+        try {
+            List<Long> mismatched = new ArrayList<>();
+            for (Entry entry : entries.values()) {
+                if (entry.likes() != likeCounts.getOrDefault(entry.filmId(), 0)) {
+                    mismatched.add(entry.filmId());
+                }
+            }
+            for (Long filmId : likeCounts.keySet()) {
+                if (!entries.containsKey(filmId)) {
+                    mismatched.add(filmId);
+                }
+            }
+            return mismatched;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Entry toEntry(Film film, int likes) {
+        Set<Integer> genreIds = new HashSet<>();
+        for (Genre genre : film.getGenres()) {
+            genreIds.add(genre.getId());
+        }
+        return new Entry(film.getId(), likes, film.getReleaseDate().getYear(), genreIds);
+    }
+
+    private void put(Entry entry) {
+        entries.put(entry.filmId(), entry);
+        ranking.add(entry);
+        rankingByYear.computeIfAbsent(entry.year(), k -> new TreeSet<>(BY_LIKES)).add(entry);
+        for (Integer genreId : entry.genreIds()) {
+            rankingByGenre.computeIfAbsent(genreId, k -> new TreeSet<>(BY_LIKES)).add(entry);
+        }
+    }
+
+    private Entry remove(long filmId) {
+        Entry entry = entries.remove(filmId);
+        if (entry == null) {
+            return null;
+        }
+        ranking.remove(entry);
+        rankingByYear.get(entry.year()).remove(entry);
+        for (Integer genreId : entry.genreIds()) {
+            rankingByGenre.get(genreId).remove(entry);
+        }
+        return entry;
+    }
+
+    private record Entry(long filmId, int likes, int year, Set<Integer> genreIds) {
+    }
+}
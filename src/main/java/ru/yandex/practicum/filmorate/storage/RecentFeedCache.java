@@ -0,0 +1,149 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Feed;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Последние события ленты активных пользователей. Для каждого пользователя хранится кольцевой буфер
+ * из не более чем {@code eventsPerUser} событий в порядке возрастания id, давно не читавшие ленту
+ * пользователи вытесняются. Буфер заводится при первом чтении последней страницы и дополняется
+ * событиями сразу после их записи в базу.
+ */
+@Component
+public class RecentFeedCache {
+    public static final int DEFAULT_EVENTS_PER_USER = 100;
+    private static final int DEFAULT_MAX_USERS = 10_000;
+
+    private final int eventsPerUser;
+    private final LinkedHashMap<Long, Buffer> buffers;
+
+    public RecentFeedCache() {
+        this(DEFAULT_EVENTS_PER_USER, DEFAULT_MAX_USERS);
+    }
+
+    public RecentFeedCache(int eventsPerUser, int maxUsers) {
+        this.eventsPerUser = eventsPerUser;
+        this.buffers = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Buffer> eldest) {
+                return size() > maxUsers;
+            }
+        };
+    }
+
+    public int getEventsPerUser() {
+        return eventsPerUser;
+    }
+
+    /**
+     * Возвращает до {@code limit} последних событий пользователя с id меньше {@code before}
+     * в порядке возрастания id. При запросе последней страницы буфер пользователя заводится
+     * из {@code loader}, который должен вернуть последние {@link #getEventsPerUser()} событий.
+     * Загрузка идет без блокировки кеша: пустой буфер ставится заранее и собирает события,
+     * записанные во время загрузки, а после загрузки они объединяются с прочитанными.
+     *
+     * @return события или {@code null}, если страницу нельзя собрать из буфера
+     */
+    public List<Feed> getPage(long userId, Long before, int limit, Supplier<List<Feed>> loader) {
+        Buffer buffer;
+        synchronized (this) {
+            buffer = buffers.get(userId);
+            if (buffer != null) {
+                return buffer.loaded ? buffer.page(before, limit) : null;
+            }
+            if (before != null || limit > eventsPerUser) {
+                return null;
+            }
+            buffer = new Buffer();
+            buffers.put(userId, buffer);
+        }
+        List<Feed> latest;
+        try {
+            latest = loader.get();
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                buffers.remove(userId, buffer);
+            }
+            throw e;
+        }
+        synchronized (this) {
+            buffer.load(latest);
+            return buffer.page(before, limit);
+        }
+    }
+
+    /**
+     * Дописывает только что сохраненные события в буферы их пользователей.
+     * События, которые уже есть в буфере, пропускаются.
+     */
+    public synchronized void append(Collection<Feed> feeds) {
+        for (Feed feed : feeds) {
+            Buffer buffer = buffers.get((long) feed.getUserId());
+            if (buffer != null) {
+                buffer.add(feed);
+            }
+        }
+    }
+
+    public synchronized void removeUser(long userId) {
+        buffers.remove(userId);
+    }
+
+    private final class Buffer {
+        private final ArrayDeque<Feed> events = new ArrayDeque<>();
+        // в буфере вся история пользователя, а не только её хвост
+        private boolean complete;
+        private boolean loaded;
+
+        /**
+         * Объединяет прочитанные из базы события с дописанными во время чтения.
+         */
+        private void load(List<Feed> latest) {
+            TreeMap<Integer, Feed> merged = new TreeMap<>();
+            latest.forEach(feed -> merged.put(feed.getEventId(), feed));
+            events.forEach(feed -> merged.put(feed.getEventId(), feed));
+            events.clear();
+            complete = latest.size() < eventsPerUser;
+            loaded = true;
+            merged.values().forEach(this::add);
+        }
+
+        private void add(Feed feed) {
+            if (!events.isEmpty() && events.getLast().getEventId() >= feed.getEventId()) {
+                return;
+            }
+            events.addLast(feed);
+            if (events.size() > eventsPerUser) {
+                events.removeFirst();
+                complete = false;
+            }
+        }
+
+        private List<Feed> page(Long before, int limit) {
+            List<Feed> page = new ArrayList<>(Math.min(limit, events.size()));
+            Iterator<Feed> iterator = events.descendingIterator();
+            while (iterator.hasNext() && page.size() < limit) {
+                Feed feed = iterator.next();
+                if (before == null || feed.getEventId() < before) {
+                    page.add(feed);
+                }
+            }
+            if (page.size() < limit && !complete) {
+                return null;
+            }
+            Collections.reverse(page);
+            return page;
+        }
+    }
+}
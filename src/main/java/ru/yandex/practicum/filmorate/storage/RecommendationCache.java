@@ -0,0 +1,159 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Готовые рекомендации по пользователям с ограничением по времени жизни и по количеству записей.
+ * Для каждой записи запоминаются похожие пользователи, чтобы сбросить её, когда кто-то из них меняет лайки.
+ */
+@Component
+public class RecommendationCache {
+    private static final int MAX_ENTRIES = 10_000;
+    private static final Duration TTL = Duration.ofMinutes(10);
+    private static final Duration ACTIVE_WINDOW = Duration.ofMinutes(30);
+
+    private final Clock clock;
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            if (size() > MAX_ENTRIES) {
+                unlinkDependents(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    };
+    private final LinkedHashMap<Long, Long> lastAccess = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private final Map<Long, Set<Long>> dependentUsers = new HashMap<>();
+
+    public RecommendationCache() {
+        this(Clock.systemUTC());
+    }
+
+    public RecommendationCache(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Возвращает рекомендации пользователя и отмечает его активным.
+     *
+     * @return id фильмов или {@code null}, если записи нет или она устарела
+     */
+    public synchronized List<Long> get(long userId) {
+        long now = clock.millis();
+        Entry entry = entries.get(userId);
+        if (entry == null) {
+            return null;
+        }
+        if (now - entry.createdAt() >= TTL.toMillis()) {
+            remove(userId);
+            return null;
+        }
+        lastAccess.put(userId, now);
+        return entry.filmIds();
+    }
+
+    /**
+     * Сохраняет рекомендации, посчитанные по запросу пользователя, и отмечает его активным.
+     */
+    public synchronized void put(long userId, List<Long> filmIds, Collection<Long> similarUserIds) {
+        lastAccess.put(userId, clock.millis());
+        store(userId, filmIds, similarUserIds);
+    }
+
+    /**
+     * Сохраняет рекомендации, посчитанные заранее, не продлевая активность пользователя.
+     */
+    public synchronized void refresh(long userId, List<Long> filmIds, Collection<Long> similarUserIds) {
+        if (lastAccess.containsKey(userId)) {
+            store(userId, filmIds, similarUserIds);
+        }
+    }
+
+    /**
+     * Сбрасывает рекомендации пользователя и всех, у кого он среди похожих.
+     */
+    public synchronized void invalidate(long userId) {
+        Set<Long> dependents = dependentUsers.remove(userId);
+        if (dependents != null) {
+            new ArrayList<>(dependents).forEach(this::remove);
+        }
+        remove(userId);
+    }
+
+    public synchronized void invalidate(Collection<Long> userIds) {
+        userIds.forEach(this::invalidate);
+    }
+
+    public synchronized void removeUser(long userId) {
+        invalidate(userId);
+        lastAccess.remove(userId);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        dependentUsers.clear();
+    }
+
+    /**
+     * Находит пользователей, которые недавно запрашивали рекомендации,
+     * но у которых записи нет или ей осталось жить меньше половины срока.
+     */
+    public synchronized List<Long> getUsersToRefresh(int limit) {
+        long now = clock.millis();
+        List<Long> userIds = new ArrayList<>();
+        for (Map.Entry<Long, Long> access : lastAccess.sequencedEntrySet().reversed()) {
+            if (userIds.size() >= limit || now - access.getValue() > ACTIVE_WINDOW.toMillis()) {
+                break;
+            }
+            Entry entry = entries.get(access.getKey());
+            if (entry == null || now - entry.createdAt() >= TTL.toMillis() / 2) {
+                userIds.add(access.getKey());
+            }
+        }
+        return userIds;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void store(long userId, List<Long> filmIds, Collection<Long> similarUserIds) {
+        remove(userId);
+        Entry entry = new Entry(List.copyOf(filmIds), Set.copyOf(similarUserIds), clock.millis());
+        entries.put(userId, entry);
+        entry.similarUserIds().forEach(similarUserId ->
+                dependentUsers.computeIfAbsent(similarUserId, k -> new HashSet<>()).add(userId));
+    }
+
+    private void remove(long userId) {
+        Entry entry = entries.remove(userId);
+        if (entry != null) {
+            unlinkDependents(userId, entry);
+        }
+    }
+
+    private void unlinkDependents(long userId, Entry entry) {
+        for (Long similarUserId : entry.similarUserIds()) {
+            Set<Long> dependents = dependentUsers.get(similarUserId);
+            if (dependents != null) {
+                dependents.remove(userId);
+                if (dependents.isEmpty()) {
+                    dependentUsers.remove(similarUserId);
+                }
+            }
+        }
+    }
+
+    private record Entry(List<Long> filmIds, Set<Long> similarUserIds, long createdAt) {
+    }
+}
@@ -0,0 +1,208 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Review;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Отзывы часто открываемых фильмов, упорядоченные по полезности так же, как в базе:
+ * по убыванию useful, при равенстве по id. Порядок фильма строится при первом запросе его отзывов,
+ * дальше отзывы переставляются по одному при изменении оценки. Давно не запрашиваемые фильмы вытесняются.
+ * Чтение из базы идет без блокировки, изменения нумеруются, и прочитанное применяется,
+ * только если после начала чтения не было более нового изменения того же отзыва.
+ */
+@Component
+public class ReviewRanking {
+    private static final int MAX_FILMS = 1_000;
+    private static final Comparator<Rank> ORDER = Comparator.comparingInt(Rank::useful).reversed()
+            .thenComparingLong(Rank::reviewId);
+
+    private final LinkedHashMap<Long, FilmReviews> films = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, FilmReviews> eldest) {
+            if (size() > MAX_FILMS) {
+                eldest.getValue().useful.keySet().forEach(filmByReview::remove);
+                return true;
+            }
+            return false;
+        }
+    };
+    private final Map<Long, Long> filmByReview = new HashMap<>();
+    // номер последнего начатого обновления отзыва, пока его оценка читается из базы
+    private final Map<Long, Long> pendingUpdates = new HashMap<>();
+    // номера изменений отзывов и фильмов, сделанных во время загрузки фильмов
+    private final Map<Long, Long> changedReviews = new HashMap<>();
+    private final Map<Long, Long> changedFilms = new HashMap<>();
+    private long version;
+    private long clearedVersion;
+    private int loads;
+
+    /**
+     * Возвращает id первых {@code count} отзывов фильма. Если фильма нет в памяти,
+     * его отзывы берутся из {@code loader} как отображение id отзыва -> полезность.
+     * Загруженный порядок сохраняется, только если во время загрузки отзывы фильма не менялись,
+     * иначе он используется для одного ответа, а следующий запрос загрузит фильм заново.
+     */
+    public List<Long> getTopReviewIds(long filmId, int count, Supplier<Map<Long, Integer>> loader) {
+        long start;
+        synchronized (this) {
+            FilmReviews reviews = films.get(filmId);
+            if (reviews != null) {
+                return reviews.top(count);
+            }
+            start = version;
+            loads++;
+        }
+        try {
+            Map<Long, Integer> useful = loader.get();
+            FilmReviews loaded = new FilmReviews();
+            useful.forEach(loaded::put);
+            synchronized (this) {
+                FilmReviews reviews = films.get(filmId);
+                if (reviews == null) {
+                    reviews = loaded;
+                    if (isUnchangedSince(start, filmId, useful.keySet())) {
+                        useful.keySet().forEach(reviewId -> filmByReview.put(reviewId, filmId));
+                        films.put(filmId, loaded);
+                    }
+                }
+                return reviews.top(count);
+            }
+        } finally {
+            synchronized (this) {
+                if (--loads == 0) {
+                    changedReviews.clear();
+                    changedFilms.clear();
+                }
+            }
+        }
+    }
+
+    public synchronized void addReview(Review review) {
+        markFilmChanged(review.getFilmId());
+        FilmReviews reviews = films.get(review.getFilmId());
+        if (reviews != null) {
+            reviews.put(review.getReviewId(), review.getUseful() == null ? 0 : review.getUseful());
+            filmByReview.put(review.getReviewId(), review.getFilmId());
+        }
+    }
+
+    /**
+     * Переставляет отзыв после изменения его оценки. Текущая полезность читается через {@code loader}
+     * без блокировки, пустой результат значит, что отзыв уже удален. Если за это время началось более новое
+     * обновление того же отзыва, прочитанное отбрасывается: более новое обновление читает базу позже
+     * и применит самую свежую оценку.
+     */
+    public void updateReview(long reviewId, Function<Long, Optional<Integer>> loader) {
+        long update;
+        synchronized (this) {
+            markReviewChanged(reviewId);
+            if (!filmByReview.containsKey(reviewId)) {
+                return;
+            }
+            update = version;
+            pendingUpdates.put(reviewId, update);
+        }
+        Optional<Integer> useful;
+        try {
+            useful = loader.apply(reviewId);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                Long filmId = filmByReview.get(reviewId);
+                if (pendingUpdates.remove(reviewId, update) && filmId != null) {
+                    removeFilm(filmId);
+                }
+            }
+            throw e;
+        }
+        synchronized (this) {
+            Long filmId = filmByReview.get(reviewId);
+            if (pendingUpdates.remove(reviewId, update) && filmId != null) {
+                if (useful.isPresent()) {
+                    films.get(filmId).put(reviewId, useful.get());
+                } else {
+                    filmByReview.remove(reviewId);
+                    films.get(filmId).remove(reviewId);
+                }
+            }
+        }
+    }
+
+    public synchronized void removeReview(long reviewId) {
+        markReviewChanged(reviewId);
+        Long filmId = filmByReview.remove(reviewId);
+        if (filmId != null) {
+            films.get(filmId).remove(reviewId);
+        }
+    }
+
+    public synchronized void removeFilm(long filmId) {
+        markFilmChanged(filmId);
+        FilmReviews reviews = films.remove(filmId);
+        if (reviews != null) {
+            reviews.useful.keySet().forEach(filmByReview::remove);
+        }
+    }
+
+    public synchronized void clear() {
+        clearedVersion = ++version;
+        films.clear();
+        filmByReview.clear();
+    }
+
+    private boolean isUnchangedSince(long start, long filmId, Collection<Long> reviewIds) {
+        if (clearedVersion > start || changedFilms.getOrDefault(filmId, 0L) > start) {
+            return false;
+        }
+        return reviewIds.stream().allMatch(reviewId -> changedReviews.getOrDefault(reviewId, 0L) <= start);
+    }
+
+    private void markReviewChanged(long reviewId) {
+        version++;
+        if (loads > 0) {
+            changedReviews.put(reviewId, version);
+        }
+    }
+
+    private void markFilmChanged(long filmId) {
+        version++;
+        if (loads > 0) {
+            changedFilms.put(filmId, version);
+        }
+    }
+
+    private record Rank(long reviewId, int useful) {
+    }
+
+    private static final class FilmReviews {
+        private final TreeSet<Rank> ranks = new TreeSet<>(ORDER);
+        private final Map<Long, Integer> useful = new HashMap<>();
+
+        private List<Long> top(int count) {
+            List<Long> ids = new ArrayList<>(Math.min(count, ranks.size()));
+            Iterator<Rank> iterator = ranks.iterator();
+            while (iterator.hasNext() && ids.size() < count) {
+                ids.add(iterator.next().reviewId());
+            }
+            return ids;
+        }
+
+        private void put(long reviewId, int score) {
+            Integer previous = useful.put(reviewId, score);
+            if (previous != null) {
+                ranks.remove(new Rank(reviewId, previous));
+            }
+            ranks.add(new Rank(reviewId, score));
+        }
+
+        private void remove(long reviewId) {
+            Integer previous = useful.remove(reviewId);
+            if (previous != null) {
+                ranks.remove(new Rank(reviewId, previous));
+            }
+        }
+    }
+}
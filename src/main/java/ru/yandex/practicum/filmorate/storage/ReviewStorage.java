@@ -2,7 +2,10 @@ package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.Review;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 public interface ReviewStorage {
     Review addReviews(Review reviews);
@@ -13,10 +16,16 @@ public interface ReviewStorage {
 
     Review getReviewsById(Long id);
 
+    List<Review> getReviewsByIds(Collection<Long> ids);
+
+    Optional<Integer> getUseful(Long reviewId);
+
     List<Review> getReviewsByFilm(Long id, int count);
 
     List<Review> getAllReviews(int count);
 
+    Map<Long, Integer> getUsefulByFilm(Long filmId);
+
     void likeToReview(Long reviewId, Long userId);
 
     void dislikeToReview(Long reviewId, Long userId);
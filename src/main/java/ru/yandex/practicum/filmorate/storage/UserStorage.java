@@ -3,14 +3,27 @@ package ru.yandex.practicum.filmorate.storage;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface UserStorage {
     Collection<User> getUsers();
 
+    List<User> getUsersPage(long afterId, int limit);
+
+    void streamUsers(Consumer<User> consumer);
+
     User getUserById(Long id);
 
+    Set<Long> getExistingUserIds(Collection<Long> ids);
+
+    List<User> getUsersByIds(Collection<Long> ids);
+
     User addUser(User user);
 
+    List<User> addUsers(List<User> users);
+
     User updateUser(User newUser);
 
     void deleteUser(Long id);
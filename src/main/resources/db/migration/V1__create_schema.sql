@@ -1,16 +1,3 @@
-DROP TABLE IF EXISTS users CASCADE;
-DROP TABLE IF EXISTS friendship CASCADE;
-DROP TABLE IF EXISTS genres CASCADE;
-DROP TABLE IF EXISTS mpa_rating CASCADE;
-DROP TABLE IF EXISTS films CASCADE;
-DROP TABLE IF EXISTS likes CASCADE;
-DROP TABLE IF EXISTS film_genres CASCADE;
-DROP TABLE IF EXISTS reviews CASCADE;
-DROP TABLE IF EXISTS useful CASCADE;
-DROP TABLE IF EXISTS feed CASCADE;
-DROP TABLE IF EXISTS directors CASCADE;
-DROP TABLE IF EXISTS directors_films CASCADE;
-
 CREATE TABLE IF NOT EXISTS users (
     user_id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
     email VARCHAR(200) NOT NULL UNIQUE,
@@ -53,7 +40,7 @@ CREATE TABLE IF NOT EXISTS genres(
 );
 
 CREATE TABLE IF NOT EXISTS film_genres(
-    id INT AUTO_INCREMENT,
+    id INT GENERATED BY DEFAULT AS IDENTITY,
     film_id  INT,
     genre_id INT,
     FOREIGN KEY(film_id) REFERENCES films(film_id),
@@ -79,9 +66,6 @@ CREATE TABLE IF NOT EXISTS useful(
     FOREIGN KEY(dislike_id) REFERENCES users(user_id)
 );
 
-
-
-
 CREATE TABLE IF NOT EXISTS feed(
     event_id INT GENERATED  BY DEFAULT AS IDENTITY PRIMARY KEY,
     time_event timestamp,
@@ -92,16 +76,15 @@ CREATE TABLE IF NOT EXISTS feed(
     FOREIGN KEY(user_id) REFERENCES users(user_id) ON DELETE CASCADE
 );
 
-
 CREATE TABLE IF NOT EXISTS directors(
     director_id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
     name        VARCHAR(200) NOT NULL
 );
 
 CREATE TABLE IF NOT EXISTS directors_films(
-    id       INT AUTO_INCREMENT,
+    id INT GENERATED BY DEFAULT AS IDENTITY,
     director_id  INT,
     film_id INT,
     FOREIGN KEY (film_id) REFERENCES films (film_id),
     FOREIGN KEY (director_id) REFERENCES directors (director_id) ON DELETE CASCADE
-);
\ No newline at end of file
+);
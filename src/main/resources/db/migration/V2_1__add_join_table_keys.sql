@@ -0,0 +1,31 @@
+CREATE TABLE likes_dedup AS SELECT DISTINCT film_id, user_id FROM likes
+    WHERE film_id IS NOT NULL AND user_id IS NOT NULL;
+DELETE FROM likes;
+INSERT INTO likes (film_id, user_id) SELECT film_id, user_id FROM likes_dedup;
+DROP TABLE likes_dedup;
+ALTER TABLE likes ALTER COLUMN film_id SET NOT NULL;
+ALTER TABLE likes ALTER COLUMN user_id SET NOT NULL;
+ALTER TABLE likes ADD PRIMARY KEY (film_id, user_id);
+CREATE INDEX IF NOT EXISTS likes_user_film_idx ON likes (user_id, film_id);
+
+CREATE TABLE film_genres_dedup AS SELECT DISTINCT film_id, genre_id FROM film_genres
+    WHERE film_id IS NOT NULL AND genre_id IS NOT NULL;
+DELETE FROM film_genres;
+ALTER TABLE film_genres DROP COLUMN IF EXISTS id;
+INSERT INTO film_genres (film_id, genre_id) SELECT film_id, genre_id FROM film_genres_dedup;
+DROP TABLE film_genres_dedup;
+ALTER TABLE film_genres ALTER COLUMN film_id SET NOT NULL;
+ALTER TABLE film_genres ALTER COLUMN genre_id SET NOT NULL;
+ALTER TABLE film_genres ADD PRIMARY KEY (film_id, genre_id);
+CREATE INDEX IF NOT EXISTS film_genres_genre_film_idx ON film_genres (genre_id, film_id);
+
+CREATE TABLE directors_films_dedup AS SELECT DISTINCT director_id, film_id FROM directors_films
+    WHERE director_id IS NOT NULL AND film_id IS NOT NULL;
+DELETE FROM directors_films;
+ALTER TABLE directors_films DROP COLUMN IF EXISTS id;
+INSERT INTO directors_films (director_id, film_id) SELECT director_id, film_id FROM directors_films_dedup;
+DROP TABLE directors_films_dedup;
+ALTER TABLE directors_films ALTER COLUMN director_id SET NOT NULL;
+ALTER TABLE directors_films ALTER COLUMN film_id SET NOT NULL;
+ALTER TABLE directors_films ADD PRIMARY KEY (film_id, director_id);
+CREATE INDEX IF NOT EXISTS directors_films_director_film_idx ON directors_films (director_id, film_id);
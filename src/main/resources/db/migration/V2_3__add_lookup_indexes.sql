@@ -0,0 +1,3 @@
+CREATE INDEX IF NOT EXISTS useful_review_idx ON useful (useful_id);
+CREATE INDEX IF NOT EXISTS feed_user_event_idx ON feed (user_id, event_id);
+CREATE INDEX IF NOT EXISTS friendship_friend_user_idx ON friendship (friend_id, user_id);
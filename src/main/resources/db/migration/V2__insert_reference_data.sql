@@ -0,0 +1,18 @@
+INSERT INTO genres (genre_id, name) VALUES
+(1, 'Комедия'),
+(2, 'Драма'),
+(3, 'Мультфильм'),
+(4, 'Триллер'),
+(5, 'Документальный'),
+(6, 'Боевик');
+
+ALTER TABLE genres ALTER COLUMN genre_id RESTART WITH 7;
+
+INSERT INTO mpa_rating (rating_id, name) VALUES
+(1, 'G'),
+(2, 'PG'),
+(3, 'PG-13'),
+(4, 'R'),
+(5, 'NC-17');
+
+ALTER TABLE mpa_rating ALTER COLUMN rating_id RESTART WITH 6;
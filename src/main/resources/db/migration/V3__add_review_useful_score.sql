@@ -0,0 +1,8 @@
+ALTER TABLE reviews ADD COLUMN IF NOT EXISTS useful INT NOT NULL DEFAULT 0;
+
+UPDATE reviews r SET useful = (
+    SELECT COUNT(u.like_id) - COUNT(u.dislike_id) FROM useful u WHERE u.useful_id = r.review_id
+);
+
+CREATE INDEX IF NOT EXISTS reviews_film_useful_idx ON reviews (film_id, useful DESC, review_id);
+CREATE INDEX IF NOT EXISTS reviews_useful_idx ON reviews (useful DESC, review_id);
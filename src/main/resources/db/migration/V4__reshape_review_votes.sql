@@ -0,0 +1,21 @@
+CREATE TABLE IF NOT EXISTS review_votes(
+    review_id INT NOT NULL,
+    user_id INT NOT NULL,
+    vote SMALLINT NOT NULL CHECK (vote IN (-1, 1)),
+    PRIMARY KEY (review_id, user_id),
+    FOREIGN KEY(review_id) REFERENCES reviews(review_id),
+    FOREIGN KEY(user_id) REFERENCES users(user_id)
+);
+
+INSERT INTO review_votes (review_id, user_id, vote)
+SELECT useful_id, COALESCE(like_id, dislike_id), MAX(CASE WHEN like_id IS NOT NULL THEN 1 ELSE -1 END)
+FROM useful
+WHERE like_id IS NOT NULL OR dislike_id IS NOT NULL
+GROUP BY useful_id, COALESCE(like_id, dislike_id);
+
+DROP TABLE useful;
+ALTER TABLE review_votes RENAME TO useful;
+
+CREATE INDEX IF NOT EXISTS useful_user_idx ON useful (user_id);
+
+UPDATE reviews r SET useful = COALESCE((SELECT SUM(u.vote) FROM useful u WHERE u.review_id = r.review_id), 0);
@@ -0,0 +1,116 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import com.jayway.jsonpath.JsonPath;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = "filmorate.import.batch-size=2")
+@AutoConfigureMockMvc
+public class BulkImportControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void importUsers_ShouldReportInvalidAndDuplicateRows() throws Exception {
+        String body = """
+                {"email":"bulk1@example.com","login":"bulk1","birthday":"1990-01-01"}
+                {"email":"bulk2@example.com","login":"bulk2","name":"Bulk","birthday":"1990-01-01"}
+                {"email":"not-an-email","login":"bulk3","birthday":"1990-01-01"}
+                {"email":"bulk1@example.com","login":"bulk4","birthday":"1990-01-01"}
+                {"email":"bulk5@example.com","login":"bulk5","birthday":"1990-01-01"}
+                """;
+
+        mockMvc.perform(post("/users/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(5))
+                .andExpect(jsonPath("$.imported").value(3))
+                .andExpect(jsonPath("$.failed").value(2))
+                .andExpect(jsonPath("$.errors[0].row").value(3))
+                .andExpect(jsonPath("$.errors[0].message", containsString("email")))
+                .andExpect(jsonPath("$.errors[1].row").value(4));
+    }
+
+    @Test
+    public void importFilms_ShouldSkipRowsWithUnknownReferences() throws Exception {
+        String body = """
+                [
+                  {"name":"Bulk 1","description":"d","releaseDate":"2000-01-01","duration":90,
+                   "mpa":{"id":1},"genres":[{"id":1},{"id":2}]},
+                  {"name":"Bulk 2","description":"d","releaseDate":"2000-01-01","duration":90,"mpa":{"id":99}},
+                  {"name":"Bulk 3","description":"d","releaseDate":"2000-01-01","duration":"long","mpa":{"id":1}},
+                  {"name":"Bulk 4","description":"d","releaseDate":"2000-01-01","duration":90,
+                   "mpa":{"id":2},"directors":[{"id":999}]},
+                  {"name":"Bulk 5","description":"d","releaseDate":"2000-01-01","duration":90,"mpa":{"id":3}}
+                ]
+                """;
+
+        mockMvc.perform(post("/films/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(5))
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.errors[0].row").value(2))
+                .andExpect(jsonPath("$.errors[0].message", containsString("Рейтинг с ID 99")))
+                .andExpect(jsonPath("$.errors[1].row").value(3))
+                .andExpect(jsonPath("$.errors[2].row").value(4))
+                .andExpect(jsonPath("$.errors[2].message", containsString("Режиссер с ID 999")));
+    }
+
+    @Test
+    public void addLikes_ShouldSkipDuplicatesAndUnknownIds() throws Exception {
+        long userId = create("/users", "{\"email\":\"liker@example.com\",\"login\":\"liker\"," +
+                "\"birthday\":\"1990-01-01\"}");
+        long filmId = create("/films", "{\"name\":\"Liked\",\"description\":\"d\"," +
+                "\"releaseDate\":\"2000-01-01\",\"duration\":90,\"mpa\":{\"id\":1}}");
+        long otherFilmId = create("/films", "{\"name\":\"Liked too\",\"description\":\"d\"," +
+                "\"releaseDate\":\"2000-01-01\",\"duration\":90,\"mpa\":{\"id\":1}}");
+        mockMvc.perform(put("/films/" + otherFilmId + "/like/" + userId))
+                .andExpect(status().isOk());
+
+        String body = String.format("""
+                [{"filmId":%1$d,"userId":%3$d},{"filmId":%1$d,"userId":%3$d},{"filmId":%2$d,"userId":%3$d},
+                 {"filmId":999999,"userId":%3$d},{"filmId":%1$d,"userId":999999},{"filmId":%1$d}]
+                """, filmId, otherFilmId, userId);
+
+        mockMvc.perform(post("/films/likes/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(6))
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.skipped").value(2))
+                .andExpect(jsonPath("$.failed").value(3))
+                .andExpect(jsonPath("$.errors[0].row").value(6))
+                .andExpect(jsonPath("$.errors[1].row").value(4))
+                .andExpect(jsonPath("$.errors[2].row").value(5));
+
+        mockMvc.perform(get("/users/" + userId + "/feed"))
+                .andExpect(jsonPath("$.length()").value(3));
+        mockMvc.perform(get("/films/common").param("userId", String.valueOf(userId))
+                        .param("friendId", String.valueOf(userId)))
+                .andExpect(jsonPath("$.length()").value(2));
+    }
+
+    private long create(String path, String json) throws Exception {
+        String response = mockMvc.perform(post(path)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return ((Number) JsonPath.read(response, "$.id")).longValue();
+    }
+}
@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.dao.FeedJournal;
+import ru.yandex.practicum.filmorate.model.enums.EventType;
+import ru.yandex.practicum.filmorate.model.enums.Operation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FeedJournalTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testRecoverEventsAfterLastCheckpoint() throws IOException {
+        Path path = dir.resolve("feed.journal");
+        FeedJournal journal = new FeedJournal(path);
+        journal.append(new FeedJournal.Entry(1, 1000, 1, EventType.LIKE, Operation.ADD, 10));
+        journal.append(new FeedJournal.Entry(2, 1000, 1, EventType.FRIEND, Operation.ADD, 2));
+        journal.checkpoint(2);
+        journal.append(new FeedJournal.Entry(3, 2000, 2, EventType.REVIEW, Operation.REMOVE, 5));
+        journal.close();
+        Files.writeString(path, "4,2000,2,LIK", StandardOpenOption.APPEND);
+
+        assertThat(new FeedJournal(path).recover())
+                .containsExactly(new FeedJournal.Entry(3, 2000, 2, EventType.REVIEW, Operation.REMOVE, 5));
+    }
+
+    @Test
+    public void testTruncate() {
+        Path path = dir.resolve("feed.journal");
+        FeedJournal journal = new FeedJournal(path);
+        journal.append(new FeedJournal.Entry(1, 1000, 1, EventType.LIKE, Operation.ADD, 10));
+        journal.truncate();
+
+        assertThat(path).doesNotExist();
+        assertThat(journal.recover()).isEmpty();
+
+        journal.append(new FeedJournal.Entry(2, 1000, 1, EventType.LIKE, Operation.REMOVE, 10));
+
+        assertThat(journal.recover()).isEmpty();
+
+        journal.write(2);
+
+        assertThat(journal.recover()).hasSize(1);
+
+        journal.append(new FeedJournal.Entry(3, 1000, 1, EventType.LIKE, Operation.ADD, 11));
+        journal.sync();
+
+        assertThat(journal.recover()).extracting(FeedJournal.Entry::seq).containsExactly(2L, 3L);
+    }
+}
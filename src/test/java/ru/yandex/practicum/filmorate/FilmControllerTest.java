@@ -53,4 +53,11 @@ public class FilmControllerTest {
                 .andExpect(jsonPath("$.error", containsString("Validation error")))
                 .andExpect(jsonPath("$.message", containsString("Продолжительность фильма должна быть положительным числом")));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void searchFilms_ShouldFailWithoutBy() throws Exception {
+        mockMvc.perform(get("/films/search").param("query", "film"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", containsString("параметр by")));
+    }
+}
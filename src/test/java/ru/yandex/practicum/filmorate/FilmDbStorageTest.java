@@ -0,0 +1,121 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.Mapper.FilmMapper;
+import ru.yandex.practicum.filmorate.dao.MpaDbStorage;
+import ru.yandex.practicum.filmorate.exception.ResourceNotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({FilmDbStorage.class, FilmMapper.class, GenreDbStorage.class, MpaDbStorage.class})
+class FilmDbStorageTest {
+    private final FilmDbStorage filmStorage;
+    private final JdbcTemplate jdbc;
+
+    private Film createFilm(List<Integer> genreIds) {
+        Film film = Film.builder()
+                .name("Film")
+                .description("Description")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new Mpa(1, null))
+                .build();
+        film.setGenres(genreIds.stream().map(id -> new Genre(id, null)).toList());
+        return film;
+    }
+
+    private Film addFilm(String name, int likeCount, Long directorId) {
+        Film film = createFilm(List.of());
+        film.setName(name);
+        if (directorId != null) {
+            film.setDirectors(List.of(new Director(directorId, null)));
+        }
+        Film added = filmStorage.addFilm(film);
+        jdbc.update("UPDATE films SET like_count = ? WHERE film_id = ?", likeCount, added.getId());
+        return added;
+    }
+
+    @Test
+    public void testUpdateFilmReplacesGenres() {
+        Film film = filmStorage.addFilm(createFilm(List.of(1, 2)));
+
+        Film update = createFilm(List.of(2, 3));
+        update.setId(film.getId());
+        filmStorage.updateFilm(update);
+
+        assertThat(filmStorage.getFilmById(film.getId()).getGenres())
+                .extracting(Genre::getId)
+                .containsExactly(2, 3);
+        assertThat(filmStorage.getFilmById(film.getId()).getGenres())
+                .extracting(Genre::getName)
+                .containsExactly("Драма", "Мультфильм");
+    }
+
+    @Test
+    public void testUpdateFilm_NotFound() {
+        Film update = createFilm(List.of());
+        update.setId(999L);
+
+        assertThatThrownBy(() -> filmStorage.updateFilm(update))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    public void testAddFilm_UnknownDirector() {
+        jdbc.update("INSERT INTO directors (name) VALUES ('Director')");
+        Long directorId = jdbc.queryForObject("SELECT MAX(director_id) FROM directors", Long.class);
+        Film film = createFilm(List.of(1));
+        film.setDirectors(List.of(new Director(directorId, null), new Director(directorId + 1, null)));
+
+        assertThatThrownBy(() -> filmStorage.addFilm(film))
+                .isInstanceOf(ValidationException.class)
+                .hasMessageContaining("Режиссер с ID " + (directorId + 1));
+    }
+
+    @Test
+    public void testSearchFilmsByTitleDirectorAndBothWithPaging() {
+        jdbc.update("INSERT INTO directors (name) VALUES ('Diego Zorrilla')");
+        Long directorId = jdbc.queryForObject("SELECT MAX(director_id) FROM directors", Long.class);
+        Long titleOnly = addFilm("The Mask of Zorro", 3, null).getId();
+        Long directorOnly = addFilm("Other", 0, directorId).getId();
+        Long both = addFilm("Zorro Returns", 1, directorId).getId();
+        addFilm("Unrelated", 5, null);
+
+        assertThat(filmStorage.searchFilmsTitle("ZORR", 10, 0))
+                .extracting(Film::getId).containsExactly(titleOnly, both);
+        assertThat(filmStorage.searchFilmsTitle("ZORR", 1, 1))
+                .extracting(Film::getId).containsExactly(both);
+
+        assertThat(filmStorage.searchFilmsDirector("zorr", 10, 0))
+                .extracting(Film::getId).containsExactly(both, directorOnly);
+        assertThat(filmStorage.searchFilmsDirector("zorr", 5, 1))
+                .extracting(Film::getId).containsExactly(directorOnly);
+
+        assertThat(filmStorage.searchFilmsTitleAndDirector("Zorr", 10, 0))
+                .extracting(Film::getId).containsExactly(titleOnly, both, directorOnly);
+        List<Film> page = filmStorage.searchFilmsTitleAndDirector("Zorr", 2, 1);
+        assertThat(page).extracting(Film::getId).containsExactly(both, directorOnly);
+        assertThat(page.get(0).getDirectors()).extracting(Director::getName).containsExactly("Diego Zorrilla");
+        assertThat(filmStorage.searchFilmsTitleAndDirector("Zorr", 10, 3)).isEmpty();
+    }
+}
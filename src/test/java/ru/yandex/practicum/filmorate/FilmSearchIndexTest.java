@@ -0,0 +1,73 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.FilmSearchIndex;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilmSearchIndexTest {
+    private final Map<Long, Integer> likes = Map.of(1L, 1, 2L, 5, 3L, 3);
+    private FilmSearchIndex index;
+
+    private Film createFilm(long id, String name, Long... directorIds) {
+        Film film = Film.builder()
+                .id(id)
+                .name(name)
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .build();
+        for (Long directorId : directorIds) {
+            film.getDirectors().add(new Director(directorId, null));
+        }
+        return film;
+    }
+
+    private List<Long> search(String query, boolean byTitle, boolean byDirector) {
+        return index.search(query, byTitle, byDirector, filmId -> likes.getOrDefault(filmId, 0));
+    }
+
+    @BeforeEach
+    public void setUp() {
+        index = new FilmSearchIndex();
+        index.load(List.of(createFilm(1, "Film Updated"), createFilm(2, "Крупная рыба", 1L),
+                        createFilm(3, "Update", 2L)),
+                List.of(new Director(1L, "Тим Бёртон"), new Director(2L, "Film Maker")));
+    }
+
+    @Test
+    public void testSearchByTitle() {
+        assertThat(search("upDat", true, false)).containsExactly(3L, 1L);
+        assertThat(search("update", true, false)).containsExactly(3L, 1L);
+        assertThat(search("film upd", true, false)).containsExactly(1L);
+        assertThat(search("КРУП", true, false)).containsExactly(2L);
+        assertThat(search("date", true, false)).isEmpty();
+    }
+
+    @Test
+    public void testSearchByTitleAndDirector() {
+        assertThat(search("бёртон", false, true)).containsExactly(2L);
+        assertThat(search("film", false, true)).containsExactly(3L);
+        assertThat(search("film", true, true)).containsExactly(3L, 1L);
+    }
+
+    @Test
+    public void testUpdates() {
+        index.putDirector(new Director(1L, "Кристофер Нолан"));
+        index.putFilm(createFilm(1, "Начало", 1L));
+        index.removeFilm(2);
+
+        assertThat(search("нолан", false, true)).containsExactly(1L);
+        assertThat(search("film", true, false)).isEmpty();
+        assertThat(search("крупная", true, false)).isEmpty();
+
+        index.removeDirector(1L);
+
+        assertThat(search("нолан", false, true)).isEmpty();
+    }
+}
@@ -0,0 +1,171 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.FriendshipGraph;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FriendshipGraphTest {
+    private static final int USERS = 30;
+
+    private FriendshipGraph graph;
+    private Set<List<Long>> database;
+
+    @BeforeEach
+    public void setUp() {
+        graph = new FriendshipGraph();
+        database = ConcurrentHashMap.newKeySet();
+    }
+
+    private boolean insert(long userId, long friendId) {
+        if (database.contains(List.of(friendId, userId))) {
+            return false;
+        }
+        return database.add(List.of(userId, friendId));
+    }
+
+    private Map<Long, List<Long>> snapshot() {
+        Map<Long, List<Long>> friendIdsByUser = new HashMap<>();
+        database.forEach(link -> friendIdsByUser.computeIfAbsent(link.get(0), id -> new ArrayList<>())
+                .add(link.get(1)));
+        return friendIdsByUser;
+    }
+
+    @Test
+    public void testFriendshipIsDirected() {
+        graph.load(Map::of);
+
+        assertThat(graph.addFriend(1, 2, () -> insert(1, 2))).isTrue();
+        assertThat(graph.addFriend(2, 1, () -> insert(2, 1))).isFalse();
+        assertThat(graph.addFriend(1, 3, () -> insert(1, 3))).isTrue();
+        assertThat(graph.addFriend(2, 3, () -> insert(2, 3))).isTrue();
+
+        assertThat(graph.getFriendIds(1)).containsExactly(2L, 3L);
+        assertThat(graph.getFriendIds(2)).containsExactly(3L);
+        assertThat(graph.getCommonFriendIds(1, 2)).containsExactly(3L);
+
+        graph.removeFriend(1, 2, () -> database.remove(List.of(1L, 2L)));
+        assertThat(graph.addFriend(2, 1, () -> insert(2, 1))).isTrue();
+        assertThat(graph.getFriendIds(2)).containsExactly(1L, 3L);
+    }
+
+    @Test
+    public void testRemoveUserDropsBothDirections() {
+        graph.load(() -> Map.of(1L, List.of(2L, 3L), 2L, List.of(3L), 3L, List.of(1L)));
+
+        graph.removeUser(3);
+
+        assertThat(graph.getFriendIds(1)).containsExactly(2L);
+        assertThat(graph.getFriendIds(2)).isEmpty();
+        assertThat(graph.getFriendIds(3)).isEmpty();
+        assertThat(graph.getCommonFriendIds(1, 2)).isEmpty();
+    }
+
+    @Test
+    public void testSlowWriteBlocksOnlyItsOwnPair() throws Exception {
+        graph.load(Map::of);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Boolean> slow = executor.submit(() -> graph.addFriend(1, 2, () -> {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return insert(1, 2);
+        }));
+        assertThat(writing.await(10, TimeUnit.SECONDS)).isTrue();
+        Future<Boolean> reverse = executor.submit(() -> graph.addFriend(2, 1, () -> insert(2, 1)));
+
+        assertThat(executor.submit(() -> graph.addFriend(1, 3, () -> insert(1, 3))).get(10, TimeUnit.SECONDS))
+                .isTrue();
+        assertThat(reverse.isDone()).isFalse();
+        release.countDown();
+
+        assertThat(slow.get(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(reverse.get(10, TimeUnit.SECONDS)).isFalse();
+        executor.shutdown();
+        assertThat(graph.getFriendIds(1)).containsExactly(2L, 3L);
+        assertThat(graph.getFriendIds(2)).isEmpty();
+    }
+
+    @Test
+    public void testConcurrentChangesMatchDatabase() throws Exception {
+        int writers = 8;
+        int readers = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(writers + readers + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<Throwable> readerError = new AtomicReference<>();
+        List<Future<?>> writes = new ArrayList<>();
+        for (int t = 0; t < writers; t++) {
+            long seed = t;
+            writes.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                start.await();
+                for (int i = 0; i < 5_000; i++) {
+                    long userId = random.nextInt(USERS);
+                    long friendId = random.nextInt(USERS);
+                    if (userId == friendId) {
+                        continue;
+                    }
+                    if (random.nextInt(3) == 0) {
+                        graph.removeFriend(userId, friendId, () -> database.remove(List.of(userId, friendId)));
+                    } else {
+                        graph.addFriend(userId, friendId, () -> insert(userId, friendId));
+                    }
+                }
+                return null;
+            }));
+        }
+        writes.add(executor.submit(() -> {
+            start.await();
+            graph.load(this::snapshot);
+            return null;
+        }));
+        for (int t = 0; t < readers; t++) {
+            executor.submit(() -> {
+                Random random = new Random();
+                try {
+                    start.await();
+                    while (!Thread.currentThread().isInterrupted()) {
+                        List<Long> friends = graph.getFriendIds(random.nextInt(USERS));
+                        List<Long> common = graph.getCommonFriendIds(random.nextInt(USERS), random.nextInt(USERS));
+                        assertThat(friends).isSorted().doesNotHaveDuplicates();
+                        assertThat(common).isSorted().doesNotHaveDuplicates();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Throwable e) {
+                    readerError.set(e);
+                }
+            });
+        }
+
+        start.countDown();
+        for (Future<?> write : writes) {
+            write.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdownNow();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(readerError.get()).isNull();
+        Map<Long, List<Long>> expected = snapshot();
+        for (long userId = 0; userId < USERS; userId++) {
+            List<Long> friendIds = new ArrayList<>(expected.getOrDefault(userId, List.of()));
+            Collections.sort(friendIds);
+            assertThat(graph.getFriendIds(userId)).as("друзья пользователя %d", userId).isEqualTo(friendIds);
+            for (long otherId = 0; otherId < USERS; otherId++) {
+                List<Long> common = new ArrayList<>(friendIds);
+                common.retainAll(expected.getOrDefault(otherId, List.of()));
+                assertThat(graph.getCommonFriendIds(userId, otherId)).isEqualTo(common);
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.LikeDbStorage;
+import ru.yandex.practicum.filmorate.dao.Mapper.FilmMapper;
+import ru.yandex.practicum.filmorate.dao.MpaDbStorage;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.enums.EventType;
+import ru.yandex.practicum.filmorate.model.enums.Operation;
+import ru.yandex.practicum.filmorate.storage.FeedStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({LikeDbStorage.class, FilmDbStorage.class, FilmMapper.class, GenreDbStorage.class, MpaDbStorage.class,
+        LikeDbStorageTest.NoFeedStorage.class})
+class LikeDbStorageTest {
+    private final LikeDbStorage likeStorage;
+    private final FilmDbStorage filmStorage;
+    private final JdbcTemplate jdbc;
+
+    private Film addFilm(String name) {
+        jdbc.update("INSERT INTO films (name, description, releaseDate, duration, rating_id) " +
+                "VALUES (?, 'Description', '2000-01-01', 100, 1)", name);
+        return Film.builder().id(jdbc.queryForObject("SELECT MAX(film_id) FROM films", Long.class)).build();
+    }
+
+    private User addUser(String login) {
+        jdbc.update("INSERT INTO users (email, login, name, birth_day) VALUES (?, ?, 'User', '2000-01-01')",
+                login + "@mail.ru", login);
+        return User.builder().id(jdbc.queryForObject("SELECT MAX(user_id) FROM users", Long.class)).build();
+    }
+
+    private int likeCount(Film film) {
+        return jdbc.queryForObject("SELECT like_count FROM films WHERE film_id = ?", Integer.class, film.getId());
+    }
+
+    @Test
+    public void testLikeCountFollowsLikesAndOrdersPopularFilms() {
+        Film first = addFilm("First");
+        Film second = addFilm("Second");
+        User user = addUser("user");
+        User other = addUser("other");
+
+        assertThat(likeStorage.addLike(first, user)).isTrue();
+        assertThat(likeStorage.addLike(first, user)).isFalse();
+        assertThat(likeStorage.addLike(second, user)).isTrue();
+        assertThat(likeStorage.addLike(second, other)).isTrue();
+        assertThat(likeCount(first)).isEqualTo(1);
+        assertThat(likeCount(second)).isEqualTo(2);
+        assertThat(filmStorage.getPopularFilms(2, null, null)).extracting(Film::getId)
+                .containsExactly(second.getId(), first.getId());
+
+        assertThat(likeStorage.deleteLike(second, other)).isTrue();
+        assertThat(likeStorage.deleteLike(second, other)).isFalse();
+        assertThat(likeStorage.deleteLike(second, user)).isTrue();
+        assertThat(likeCount(second)).isZero();
+        assertThat(filmStorage.getPopularFilms(2, null, null)).extracting(Film::getId)
+                .containsExactly(first.getId(), second.getId());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void testConcurrentSameLikeIsCountedOnce() throws Exception {
+        Film film = addFilm("Concurrent");
+        User user = addUser("concurrent");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<Boolean>> likes = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                likes.add(() -> likeStorage.addLike(film, user));
+            }
+            int added = 0;
+            for (Future<Boolean> result : executor.invokeAll(likes)) {
+                added += result.get() ? 1 : 0;
+            }
+
+            assertThat(added).isEqualTo(1);
+            assertThat(likeCount(film)).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    static class NoFeedStorage implements FeedStorage {
+        @Override
+        public List<Feed> getFeed(Long id) {
+            return List.of();
+        }
+
+        @Override
+        public List<Feed> getFeedPage(Long id, Long before, int limit) {
+            return List.of();
+        }
+
+        @Override
+        public void addEvent(long userId, EventType eventType, Operation operation, long entityId) {
+        }
+    }
+}
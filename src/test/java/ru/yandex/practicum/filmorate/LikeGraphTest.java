@@ -0,0 +1,153 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.LikeGraph;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LikeGraphTest {
+    private static final int USERS = 20;
+    private static final int FILMS = 10;
+
+    private LikeGraph likeGraph;
+
+    @BeforeEach
+    public void setUp() {
+        likeGraph = new LikeGraph();
+        likeGraph.load(() -> Map.of(1L, List.of(1L, 2L), 2L, List.of(1L, 2L, 6L), 3L, List.of(2L, 4L), 4L, List.of(5L),
+                5L, List.of(1L, 3L, 4L)));
+    }
+
+    @Test
+    public void testGetRecommendedFilms() {
+        assertThat(likeGraph.getSimilarUsers(1)).containsExactly(Map.entry(2L, 2), Map.entry(3L, 1),
+                Map.entry(5L, 1));
+        assertThat(likeGraph.getRecommendation(1, 10).filmIds()).containsExactly(4L, 6L, 3L);
+        assertThat(likeGraph.getRecommendation(1, 2).filmIds()).containsExactly(4L, 6L);
+        assertThat(likeGraph.getRecommendation(1, 2).similarUserIds()).containsExactly(2L, 3L, 5L);
+        assertThat(likeGraph.getRecommendation(4, 10).filmIds()).isEmpty();
+        assertThat(likeGraph.getRecommendation(6, 10).filmIds()).isEmpty();
+    }
+
+    @Test
+    public void testIncrementalUpdates() {
+        assertThat(likeGraph.removeLike(3, 2, () -> true)).isTrue();
+        assertThat(likeGraph.addLike(4, 1, () -> true)).isTrue();
+        assertThat(likeGraph.addLike(4, 2, () -> false)).isFalse();
+        assertThat(likeGraph.removeLike(1, 1, () -> false)).isFalse();
+        assertThat(likeGraph.getLikedFilmIds(4)).containsExactly(1L, 5L);
+        assertThat(likeGraph.getLikedFilmIds(1)).containsExactly(1L, 2L);
+
+        assertThat(likeGraph.getSimilarUsers(1)).containsExactly(Map.entry(2L, 2), Map.entry(4L, 1),
+                Map.entry(5L, 1));
+        assertThat(likeGraph.getRecommendation(1, 10).filmIds()).containsExactly(6L, 3L, 4L, 5L);
+
+        likeGraph.removeFilm(6, () -> { });
+        assertThat(likeGraph.removeUser(4, () -> List.of(1L, 5L))).containsExactly(1L, 5L);
+
+        assertThat(likeGraph.getRecommendation(1, 10).filmIds()).containsExactly(3L, 4L);
+        assertThat(likeGraph.getSimilarUsers(4)).isEmpty();
+    }
+
+    @Test
+    public void testBatchOfLikesWithLargeIds() {
+        long film = 5_000_000_000L;
+        likeGraph.addLikes(() -> List.of(new Like(film, 1L), new Like(film, 3L), new Like(2L, 3L), new Like(film, 1L)));
+
+        assertThat(likeGraph.getSimilarUsers(3)).containsExactly(Map.entry(1L, 2), Map.entry(2L, 1),
+                Map.entry(5L, 1));
+        assertThat(likeGraph.getRecommendation(3, 10).filmIds()).containsExactly(1L, 3L, 6L);
+
+        likeGraph.removeFilm(film, () -> { });
+        assertThat(likeGraph.getSimilarUsers(3)).containsExactly(Map.entry(1L, 1), Map.entry(2L, 1),
+                Map.entry(5L, 1));
+    }
+
+    @Test
+    public void testConcurrentChangesMatchDatabase() throws Exception {
+        Set<List<Long>> database = ConcurrentHashMap.newKeySet();
+        LikeGraph graph = new LikeGraph();
+        int writers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> writes = new ArrayList<>();
+        for (int t = 0; t < writers; t++) {
+            long seed = t;
+            writes.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                start.await();
+                for (int i = 0; i < 5_000; i++) {
+                    long userId = random.nextInt(USERS);
+                    long filmId = random.nextInt(FILMS);
+                    if (random.nextBoolean()) {
+                        graph.removeLike(userId, filmId, () -> database.remove(List.of(userId, filmId)));
+                    } else {
+                        graph.addLike(userId, filmId, () -> database.add(List.of(userId, filmId)));
+                    }
+                }
+                return null;
+            }));
+        }
+        writes.add(executor.submit(() -> {
+            start.await();
+            graph.load(() -> snapshot(database));
+            return null;
+        }));
+
+        start.countDown();
+        for (Future<?> write : writes) {
+            write.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        Map<Long, List<Long>> expected = snapshot(database);
+        for (long userId = 0; userId < USERS; userId++) {
+            List<Long> filmIds = new ArrayList<>(expected.getOrDefault(userId, List.of()));
+            Collections.sort(filmIds);
+            assertThat(graph.getLikedFilmIds(userId)).as("лайки пользователя %d", userId).isEqualTo(filmIds);
+        }
+    }
+
+    @Test
+    public void testChangesOfSameLikeAndLoadWaitForWriteInProgress() throws Exception {
+        Set<List<Long>> database = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Boolean> add = executor.submit(() -> likeGraph.addLike(7, 1, () -> {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return database.add(List.of(7L, 1L));
+        }));
+        assertThat(writing.await(10, TimeUnit.SECONDS)).isTrue();
+        Future<Boolean> remove = executor.submit(() ->
+                likeGraph.removeLike(7, 1, () -> database.remove(List.of(7L, 1L))));
+        Future<?> load = executor.submit(() -> likeGraph.load(() -> snapshot(database)));
+
+        Thread.sleep(200);
+        assertThat(remove.isDone()).isFalse();
+        assertThat(load.isDone()).isFalse();
+        release.countDown();
+
+        assertThat(add.get(10, TimeUnit.SECONDS)).isTrue();
+        load.get(10, TimeUnit.SECONDS);
+        remove.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+        assertThat(likeGraph.getLikedFilmIds(7)).isEqualTo(snapshot(database).getOrDefault(7L, List.of()));
+    }
+
+    private static Map<Long, List<Long>> snapshot(Set<List<Long>> database) {
+        Map<Long, List<Long>> filmIdsByUser = new HashMap<>();
+        database.forEach(like -> filmIdsByUser.computeIfAbsent(like.get(0), id -> new ArrayList<>()).add(like.get(1)));
+        return filmIdsByUser;
+    }
+}
@@ -0,0 +1,129 @@
+package ru.yandex.practicum.filmorate;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class PagingControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void getFilms_ShouldReturnPageAfterGivenId() throws Exception {
+        long first = createFilm("Page 1");
+        long second = createFilm("Page 2");
+        createFilm("Page 3");
+
+        mockMvc.perform(get("/films").param("after", String.valueOf(first)).param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(second))
+                .andExpect(jsonPath("$[0].name").value("Page 2"));
+        mockMvc.perform(get("/films").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void getUsers_ShouldReturnPageAfterGivenId() throws Exception {
+        long first = createUser("page1");
+        long second = createUser("page2");
+        createUser("page3");
+
+        mockMvc.perform(get("/users").param("after", String.valueOf(first)).param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(second))
+                .andExpect(jsonPath("$[0].login").value("page2"));
+        mockMvc.perform(get("/users").param("after", String.valueOf(first)).param("limit", "-1"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void getUsers_ShouldCapPageSizeAndStreamAllUsers() throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 1005; i++) {
+            body.append(String.format("{\"email\":\"cap%d@example.com\",\"login\":\"cap%d\"," +
+                    "\"birthday\":\"1990-01-01\"}%n", i, i));
+        }
+        mockMvc.perform(post("/users/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1005));
+
+        mockMvc.perform(get("/users").param("limit", "5000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1000));
+
+        String all = mockMvc.perform(get("/users"))
+                .andReturn().getResponse().getContentAsString();
+        List<Integer> ids = JsonPath.read(all, "$[*].id");
+        List<String> lines = stream("/users");
+        assertThat(lines).hasSize(ids.size());
+        assertThat(lines).map(line -> ((Number) JsonPath.read(line, "$.id")).intValue())
+                .isSorted()
+                .containsExactlyInAnyOrderElementsOf(ids);
+    }
+
+    @Test
+    public void streamFilms_ShouldWriteOneJsonObjectPerLine() throws Exception {
+        long id = createFilm("Streamed");
+
+        List<String> lines = stream("/films");
+        String all = mockMvc.perform(get("/films"))
+                .andReturn().getResponse().getContentAsString();
+        assertThat(lines).hasSize(JsonPath.<List<Object>>read(all, "$").size());
+        assertThat(lines).anySatisfy(line -> {
+            assertThat(((Number) JsonPath.read(line, "$.id")).longValue()).isEqualTo(id);
+            assertThat(JsonPath.<String>read(line, "$.name")).isEqualTo("Streamed");
+            assertThat(JsonPath.<Integer>read(line, "$.mpa.id")).isEqualTo(1);
+        });
+    }
+
+    private List<String> stream(String path) throws Exception {
+        MvcResult result = mockMvc.perform(get(path).accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String content = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+        assertThat(content).endsWith("\n");
+        return content.lines().toList();
+    }
+
+    private long createFilm(String name) throws Exception {
+        return create("/films", "{\"name\":\"" + name + "\",\"description\":\"d\"," +
+                "\"releaseDate\":\"2000-01-01\",\"duration\":90,\"mpa\":{\"id\":1}}");
+    }
+
+    private long createUser(String login) throws Exception {
+        return create("/users", "{\"email\":\"" + login + "@example.com\",\"login\":\"" + login + "\"," +
+                "\"birthday\":\"1990-01-01\"}");
+    }
+
+    private long create(String path, String json) throws Exception {
+        String response = mockMvc.perform(post(path)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return ((Number) JsonPath.read(response, "$.id")).longValue();
+    }
+}
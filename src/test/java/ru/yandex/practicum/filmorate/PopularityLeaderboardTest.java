@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.PopularityLeaderboard;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PopularityLeaderboardTest {
+    private PopularityLeaderboard leaderboard;
+
+    private Film createFilm(long id, int year, Integer... genreIds) {
+        Film film = Film.builder()
+                .id(id)
+                .name("Film " + id)
+                .releaseDate(LocalDate.of(year, 1, 1))
+                .build();
+        for (Integer genreId : genreIds) {
+            film.getGenres().add(new Genre(genreId, null));
+        }
+        return film;
+    }
+
+    @BeforeEach
+    public void setUp() {
+        leaderboard = new PopularityLeaderboard();
+        leaderboard.load(List.of(createFilm(1, 2000, 1), createFilm(2, 2001, 1, 2), createFilm(3, 2000, 2)),
+                Map.of(1L, 1, 2L, 3, 3L, 2));
+    }
+
+    @Test
+    public void testGetTop() {
+        assertThat(leaderboard.getTop(10, null, null)).containsExactly(2L, 3L, 1L);
+        assertThat(leaderboard.getTop(2, null, null)).containsExactly(2L, 3L);
+        assertThat(leaderboard.getTop(10, 1, null)).containsExactly(2L, 1L);
+        assertThat(leaderboard.getTop(10, null, 2000)).containsExactly(3L, 1L);
+        assertThat(leaderboard.getTop(10, 2, 2000)).containsExactly(3L);
+        assertThat(leaderboard.getTop(10, 5, null)).isEmpty();
+    }
+
+    @Test
+    public void testChangeLikesAndFilms() {
+        leaderboard.changeLikes(1, 5);
+        leaderboard.removeFilm(2);
+        leaderboard.addFilm(createFilm(4, 2000, 1));
+
+        assertThat(leaderboard.getTop(10, null, null)).containsExactly(1L, 3L, 4L);
+        assertThat(leaderboard.getTop(10, 1, null)).containsExactly(1L, 4L);
+
+        leaderboard.updateFilm(createFilm(1, 2005, 2));
+
+        assertThat(leaderboard.getTop(10, 1, null)).containsExactly(4L);
+        assertThat(leaderboard.getTop(10, null, 2005)).containsExactly(1L);
+        assertThat(leaderboard.getLikes(1)).isEqualTo(6);
+    }
+
+    @Test
+    public void testVerify() {
+        assertThat(leaderboard.verify(Map.of(1L, 1, 2L, 3, 3L, 2))).isEmpty();
+        assertThat(leaderboard.verify(Map.of(1L, 1, 2L, 4, 3L, 2))).containsExactly(2L);
+    }
+}
@@ -0,0 +1,46 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.PopularityLeaderboard;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class PopularityVerificationTest {
+    @Autowired
+    private FilmService filmService;
+    @Autowired
+    private PopularityLeaderboard popularityLeaderboard;
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Test
+    public void testChangedCounterIsReloaded() {
+        Film film = filmService.addFilm(Film.builder()
+                .name("Film")
+                .description("Description")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new Mpa(1, null))
+                .build());
+        jdbc.update("INSERT INTO users (email, login, name, birth_day) " +
+                "VALUES ('popular@mail.ru', 'popular', 'User', '2000-01-01')");
+        long userId = jdbc.queryForObject("SELECT MAX(user_id) FROM users", Long.class);
+        filmService.addLike(film.getId(), userId);
+
+        popularityLeaderboard.changeLikes(film.getId(), 5);
+        assertThat(popularityLeaderboard.getLikes(film.getId())).isEqualTo(6);
+
+        assertThat(filmService.verifyPopularity()).contains(film.getId());
+        assertThat(popularityLeaderboard.getLikes(film.getId())).isEqualTo(1);
+        assertThat(filmService.verifyPopularity()).isEmpty();
+    }
+}
@@ -0,0 +1,108 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.enums.EventType;
+import ru.yandex.practicum.filmorate.model.enums.Operation;
+import ru.yandex.practicum.filmorate.storage.RecentFeedCache;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RecentFeedCacheTest {
+    private RecentFeedCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    public void setUp() {
+        cache = new RecentFeedCache(3, 2);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    public void testLatestPageIsLoadedOnceAndFollowsAppends() {
+        assertThat(eventIds(cache.getPage(1, null, 2, () -> load(feed(1, 1), feed(1, 2), feed(1, 3)))))
+                .containsExactly(2, 3);
+
+        cache.append(List.of(feed(1, 4), feed(2, 5), feed(1, 4)));
+
+        assertThat(eventIds(cache.getPage(1, null, 3, List::of))).containsExactly(2, 3, 4);
+        assertThat(eventIds(cache.getPage(1, 4L, 2, List::of))).containsExactly(2, 3);
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testOlderEventsThanBufferAreNotServed() {
+        cache.getPage(1, null, 1, () -> load(feed(1, 1), feed(1, 2), feed(1, 3)));
+        cache.append(List.of(feed(1, 4)));
+
+        assertThat(cache.getPage(1, 3L, 2, List::of)).isNull();
+        assertThat(cache.getPage(1, null, 4, List::of)).isNull();
+    }
+
+    @Test
+    public void testShortHistoryIsComplete() {
+        cache.getPage(1, null, 3, () -> load(feed(1, 1), feed(1, 2)));
+
+        assertThat(eventIds(cache.getPage(1, 2L, 3, List::of))).containsExactly(1);
+        assertThat(cache.getPage(1, 1L, 3, List::of)).isEmpty();
+    }
+
+    @Test
+    public void testLeastRecentlyReadUserIsEvicted() {
+        cache.getPage(1, null, 1, () -> load(feed(1, 1)));
+        cache.getPage(2, null, 1, () -> load(feed(2, 2)));
+        cache.getPage(1, null, 1, List::of);
+        cache.getPage(3, null, 1, () -> load(feed(3, 3)));
+        cache.removeUser(1);
+
+        assertThat(cache.getPage(1, null, 1, () -> load(feed(1, 4)))).extracting(Feed::getEventId)
+                .containsExactly(4);
+        assertThat(cache.getPage(2, 5L, 1, List::of)).isNull();
+    }
+
+    @Test
+    public void testEventsAppendedWhileLoadingAreMerged() {
+        List<Feed> page = cache.getPage(1, null, 3, () -> {
+            cache.append(List.of(feed(1, 3), feed(1, 4)));
+            assertThat(cache.getPage(1, null, 1, List::of)).isNull();
+            return load(feed(1, 1), feed(1, 2), feed(1, 3));
+        });
+
+        assertThat(eventIds(page)).containsExactly(2, 3, 4);
+        assertThat(cache.getPage(1, 2L, 1, List::of)).isNull();
+    }
+
+    @Test
+    public void testFailedLoadIsNotCached() {
+        assertThatThrownBy(() -> cache.getPage(1, null, 1, () -> {
+            throw new IllegalStateException("База недоступна");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(eventIds(cache.getPage(1, null, 1, () -> load(feed(1, 1))))).containsExactly(1);
+    }
+
+    private List<Feed> load(Feed... feeds) {
+        loads.incrementAndGet();
+        return List.of(feeds);
+    }
+
+    private static List<Integer> eventIds(List<Feed> feeds) {
+        return feeds.stream().map(Feed::getEventId).toList();
+    }
+
+    private static Feed feed(int userId, int eventId) {
+        return Feed.builder()
+                .eventId(eventId)
+                .userId(userId)
+                .timestamp(0L)
+                .eventType(EventType.LIKE)
+                .operation(Operation.ADD)
+                .entityId(1)
+                .build();
+    }
+}
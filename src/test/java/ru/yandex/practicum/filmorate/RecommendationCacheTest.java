@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.RecommendationCache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecommendationCacheTest {
+    private MutableClock clock;
+    private RecommendationCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        clock = new MutableClock();
+        cache = new RecommendationCache(clock);
+    }
+
+    @Test
+    public void testInvalidateSimilarUsers() {
+        cache.put(1, List.of(3L, 4L), List.of(2L));
+        cache.put(2, List.of(5L), List.of(3L));
+
+        assertThat(cache.get(1)).containsExactly(3L, 4L);
+
+        cache.invalidate(2);
+
+        assertThat(cache.get(1)).isNull();
+        assertThat(cache.get(2)).isNull();
+        assertThat(cache.getUsersToRefresh(10)).containsExactly(1L, 2L);
+    }
+
+    @Test
+    public void testExpiration() {
+        cache.put(1, List.of(3L), List.of(2L));
+        clock.advance(Duration.ofMinutes(6));
+
+        assertThat(cache.get(1)).containsExactly(3L);
+        assertThat(cache.getUsersToRefresh(10)).containsExactly(1L);
+
+        cache.refresh(1, List.of(4L), List.of(2L));
+        clock.advance(Duration.ofMinutes(9));
+
+        assertThat(cache.get(1)).containsExactly(4L);
+
+        clock.advance(Duration.ofMinutes(1));
+
+        assertThat(cache.get(1)).isNull();
+
+        clock.advance(Duration.ofMinutes(30));
+
+        assertThat(cache.getUsersToRefresh(10)).isEmpty();
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant = Instant.EPOCH;
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
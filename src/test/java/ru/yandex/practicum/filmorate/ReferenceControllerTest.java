@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class ReferenceControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void getAllGenres_ShouldReturnNotModifiedForMatchingEtag() throws Exception {
+        String etag = mockMvc.perform(get("/genres"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(6)))
+                .andExpect(jsonPath("$[0].name").value("Комедия"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/genres").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    public void getAllMpa_ShouldReturnNotModifiedForMatchingEtag() throws Exception {
+        String etag = mockMvc.perform(get("/mpa"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(5)))
+                .andExpect(header().exists("Cache-Control"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/mpa").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    public void getGenreById_ShouldReturnNotFoundForUnknownId() throws Exception {
+        mockMvc.perform(get("/genres/100"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/mpa/-1"))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,175 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dao.Mapper.ReviewMapper;
+import ru.yandex.practicum.filmorate.dao.Mapper.UserMapper;
+import ru.yandex.practicum.filmorate.dao.ReviewDbStorage;
+import ru.yandex.practicum.filmorate.dao.UserDbStorage;
+import ru.yandex.practicum.filmorate.exception.ResourceNotFoundException;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.model.enums.EventType;
+import ru.yandex.practicum.filmorate.model.enums.Operation;
+import ru.yandex.practicum.filmorate.storage.FeedStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({ReviewDbStorage.class, ReviewMapper.class, UserDbStorage.class, UserMapper.class,
+        ReviewDbStorageTest.RecordingFeedStorage.class})
+class ReviewDbStorageTest {
+    private final ReviewDbStorage reviewStorage;
+    private final UserDbStorage userStorage;
+    private final JdbcTemplate jdbc;
+    private final RecordingFeedStorage feedStorage;
+
+    private long filmId;
+    private long[] userIds;
+
+    @BeforeEach
+    public void setUp() {
+        feedStorage.events.clear();
+        jdbc.update("INSERT INTO films (name, description, releaseDate, duration, rating_id) " +
+                "VALUES ('Film', 'Description', '2000-01-01', 100, 1)");
+        filmId = jdbc.queryForObject("SELECT MAX(film_id) FROM films", Long.class);
+        userIds = new long[4];
+        for (int i = 0; i < userIds.length; i++) {
+            jdbc.update("INSERT INTO users (email, login, name, birth_day) VALUES (?, ?, 'User', '2000-01-01')",
+                    "user" + i + "@mail.ru", "user" + i);
+            userIds[i] = jdbc.queryForObject("SELECT MAX(user_id) FROM users", Long.class);
+        }
+    }
+
+    private Review addReview(long userId) {
+        return reviewStorage.addReviews(Review.builder()
+                .content("Review")
+                .isPositive(true)
+                .userId(userId)
+                .filmId(filmId)
+                .build());
+    }
+
+    @Test
+    public void testVotesKeepUsefulScore() {
+        long reviewId = addReview(userIds[0]).getReviewId();
+
+        reviewStorage.likeToReview(reviewId, userIds[1]);
+        reviewStorage.likeToReview(reviewId, userIds[1]);
+        reviewStorage.likeToReview(reviewId, userIds[2]);
+        assertThat(reviewStorage.getReviewsById(reviewId).getUseful()).isEqualTo(2);
+
+        reviewStorage.dislikeToReview(reviewId, userIds[2]);
+        reviewStorage.dislikeToReview(reviewId, userIds[3]);
+        assertThat(reviewStorage.getReviewsById(reviewId).getUseful()).isEqualTo(-1);
+
+        reviewStorage.deleteLike(reviewId, userIds[1]);
+        reviewStorage.deleteLike(reviewId, userIds[1]);
+        reviewStorage.deleteDislike(reviewId, userIds[3]);
+        assertThat(reviewStorage.getReviewsById(reviewId).getUseful()).isEqualTo(-1);
+    }
+
+    @Test
+    public void testReviewsAreLimitedAfterSortingByUseful() {
+        long first = addReview(userIds[0]).getReviewId();
+        long second = addReview(userIds[1]).getReviewId();
+        long third = addReview(userIds[2]).getReviewId();
+        reviewStorage.likeToReview(third, userIds[0]);
+        reviewStorage.likeToReview(third, userIds[1]);
+        reviewStorage.likeToReview(second, userIds[0]);
+        reviewStorage.dislikeToReview(first, userIds[1]);
+
+        assertThat(reviewStorage.getReviewsByFilm(filmId, 2)).extracting(Review::getReviewId)
+                .containsExactly(third, second);
+        assertThat(reviewStorage.getAllReviews(3)).extracting(Review::getReviewId)
+                .containsExactly(third, second, first);
+    }
+
+    @Test
+    public void testBatchLoadAndUsefulSkipDeletedReviews() {
+        long first = addReview(userIds[0]).getReviewId();
+        long second = addReview(userIds[1]).getReviewId();
+        reviewStorage.likeToReview(second, userIds[0]);
+        reviewStorage.deleteReviews(first);
+
+        assertThat(reviewStorage.getReviewsByIds(List.of(second, first, second)))
+                .extracting(Review::getReviewId, Review::getUseful)
+                .containsExactly(tuple(second, 1));
+        assertThat(reviewStorage.getReviewsByIds(List.of())).isEmpty();
+        assertThat(reviewStorage.getUseful(second)).contains(1);
+        assertThat(reviewStorage.getUseful(first)).isEmpty();
+    }
+
+    @Test
+    public void testDeleteUserRemovesVotesAndReviews() {
+        long ownReview = addReview(userIds[0]).getReviewId();
+        long otherReview = addReview(userIds[1]).getReviewId();
+        reviewStorage.likeToReview(ownReview, userIds[1]);
+        reviewStorage.likeToReview(otherReview, userIds[0]);
+        reviewStorage.likeToReview(otherReview, userIds[2]);
+
+        userStorage.deleteUser(userIds[0]);
+
+        assertThat(reviewStorage.getAllReviews(10)).extracting(Review::getReviewId).containsExactly(otherReview);
+        assertThat(reviewStorage.getReviewsById(otherReview).getUseful()).isEqualTo(1);
+    }
+
+    @Test
+    public void testUpdateAndDeleteReturnReviewAuthor() {
+        long reviewId = addReview(userIds[0]).getReviewId();
+        reviewStorage.likeToReview(reviewId, userIds[1]);
+
+        Review updated = reviewStorage.updateReviews(Review.builder()
+                .reviewId(reviewId)
+                .content("Updated")
+                .isPositive(false)
+                .userId(userIds[2])
+                .filmId(filmId)
+                .build());
+        reviewStorage.deleteReviews(reviewId);
+
+        assertThat(updated.getContent()).isEqualTo("Updated");
+        assertThat(updated.getIsPositive()).isFalse();
+        assertThat(updated.getUserId()).isEqualTo(userIds[0]);
+        assertThat(updated.getUseful()).isEqualTo(1);
+        assertThat(feedStorage.events).containsExactly(
+                userIds[0] + " ADD " + reviewId,
+                userIds[0] + " UPDATE " + reviewId,
+                userIds[0] + " REMOVE " + reviewId);
+        assertThat(reviewStorage.getAllReviews(10)).isEmpty();
+        assertThatThrownBy(() -> reviewStorage.deleteReviews(reviewId))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    static class RecordingFeedStorage implements FeedStorage {
+        private final List<String> events = new ArrayList<>();
+
+        @Override
+        public List<Feed> getFeed(Long id) {
+            return List.of();
+        }
+
+        @Override
+        public List<Feed> getFeedPage(Long id, Long before, int limit) {
+            return List.of();
+        }
+
+        @Override
+        public void addEvent(long userId, EventType eventType, Operation operation, long entityId) {
+            events.add(userId + " " + operation + " " + entityId);
+        }
+    }
+}
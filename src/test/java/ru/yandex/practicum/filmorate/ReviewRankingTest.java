@@ -0,0 +1,106 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.storage.ReviewRanking;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReviewRankingTest {
+    private ReviewRanking ranking;
+    private Map<Long, Integer> useful;
+
+    @BeforeEach
+    public void setUp() {
+        ranking = new ReviewRanking();
+        useful = new HashMap<>(Map.of(1L, 0, 2L, 3, 3L, 0));
+    }
+
+    private Review review(long reviewId, long filmId) {
+        return Review.builder()
+                .reviewId(reviewId)
+                .filmId(filmId)
+                .useful(useful.get(reviewId))
+                .build();
+    }
+
+    @Test
+    public void testReviewsAreOrderedByUsefulThenId() {
+        assertThat(ranking.getTopReviewIds(1, 10, () -> useful)).containsExactly(2L, 1L, 3L);
+        assertThat(ranking.getTopReviewIds(1, 2, Map::of)).containsExactly(2L, 1L);
+    }
+
+    @Test
+    public void testChangesReorderCachedFilm() {
+        ranking.getTopReviewIds(1, 10, () -> useful);
+
+        useful.put(3L, 5);
+        ranking.updateReview(3, id -> Optional.of(useful.get(id)));
+        useful.put(4L, 0);
+        ranking.addReview(review(4, 1));
+        ranking.removeReview(2);
+
+        assertThat(ranking.getTopReviewIds(1, 10, Map::of)).containsExactly(3L, 1L, 4L);
+    }
+
+    @Test
+    public void testReviewDeletedBeforeUpdateIsDropped() {
+        ranking.getTopReviewIds(1, 10, () -> useful);
+
+        ranking.updateReview(2, id -> Optional.empty());
+
+        assertThat(ranking.getTopReviewIds(1, 10, Map::of)).containsExactly(1L, 3L);
+    }
+
+    @Test
+    public void testReviewsOfUncachedFilmAreIgnored() {
+        useful.put(4L, 7);
+        ranking.addReview(review(4, 2));
+        ranking.updateReview(4, id -> {
+            throw new AssertionError("Фильм не загружен, отзыв не должен читаться");
+        });
+
+        assertThat(ranking.getTopReviewIds(2, 10, Map::of)).isEmpty();
+
+        ranking.removeFilm(2);
+        assertThat(ranking.getTopReviewIds(2, 10, () -> Map.of(4L, 7))).containsExactly(4L);
+    }
+
+    @Test
+    public void testOlderUpdateDoesNotOverwriteNewerOne() {
+        ranking.getTopReviewIds(1, 10, () -> useful);
+
+        ranking.updateReview(3, id -> {
+            Optional<Integer> stale = Optional.of(useful.get(id));
+            useful.put(3L, 5);
+            ranking.updateReview(3, newerId -> Optional.of(useful.get(newerId)));
+            return stale;
+        });
+
+        assertThat(ranking.getTopReviewIds(1, 10, Map::of)).containsExactly(3L, 2L, 1L);
+    }
+
+    @Test
+    public void testFilmChangedWhileLoadingIsNotKept() {
+        AtomicInteger loads = new AtomicInteger();
+        assertThat(ranking.getTopReviewIds(1, 10, () -> {
+            loads.incrementAndGet();
+            ranking.addReview(review(4, 1));
+            return Map.of(1L, 0, 2L, 3);
+        })).containsExactly(2L, 1L);
+
+        useful.put(4L, 0);
+        assertThat(ranking.getTopReviewIds(1, 10, () -> {
+            loads.incrementAndGet();
+            return useful;
+        })).containsExactly(2L, 1L, 3L, 4L);
+        assertThat(ranking.getTopReviewIds(1, 10, Map::of)).containsExactly(2L, 1L, 3L, 4L);
+        assertThat(loads.get()).isEqualTo(2);
+    }
+}